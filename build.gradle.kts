@@ -1,6 +1,7 @@
 plugins {
     java
     `java-library`
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "io.github.gaming32"
@@ -12,6 +13,7 @@ repositories {
 
 dependencies {
     api("org.ow2.asm:asm:9.6")
+    implementation("org.ow2.asm:asm-commons:9.6")
 
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
@@ -20,3 +22,11 @@ dependencies {
 tasks.test {
     useJUnitPlatform()
 }
+
+jmh {
+    jmhVersion.set("1.37")
+    benchmarkMode.set(listOf("thrpt"))
+    timeUnit.set("s")
+    // Allocation rate, to judge GC churn alongside throughput
+    profilers.set(listOf("gc"))
+}
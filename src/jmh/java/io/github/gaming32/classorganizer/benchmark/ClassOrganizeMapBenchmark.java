@@ -0,0 +1,99 @@
+package io.github.gaming32.classorganizer.benchmark;
+
+import io.github.gaming32.classorganizer.ClassOrganizeMap;
+import io.github.gaming32.classorganizer.FrozenClassOrganizeMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link ClassOrganizeMap} operations used after organizing. Each invocation gets a fresh map, since
+ * every operation measured here modifies it.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class ClassOrganizeMapBenchmark {
+    @Param({"10000", "100000"})
+    public int classCount;
+
+    /**
+     * The fraction of classes that start out alone in their package.
+     */
+    @Param({"0.5"})
+    public double singleDensity;
+
+    private String[] classNames;
+    private int[] packages;
+    private int[] merges;
+    private ClassOrganizeMap map;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        final Random random = new Random(0x5eed);
+        classNames = new String[classCount];
+        packages = new int[classCount];
+        int nextPackage = 0;
+        for (int i = 0; i < classCount; i++) {
+            classNames[i] = "p" + (i % 97) + "/C" + i;
+            if (i == 0 || random.nextDouble() < singleDensity) {
+                packages[i] = nextPackage++;
+            } else {
+                // Join the package of an earlier class, so that some packages grow large
+                packages[i] = packages[random.nextInt(i)];
+            }
+        }
+        merges = new int[classCount];
+        for (int i = 0; i < merges.length; i++) {
+            merges[i] = random.nextInt(classCount);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        map = new ClassOrganizeMap();
+        for (int i = 0; i < classCount; i++) {
+            map.addClass(classNames[i], packages[i]);
+        }
+    }
+
+    @Benchmark
+    public ClassOrganizeMap mergePackages() {
+        for (int i = 0; i + 1 < merges.length; i += 2) {
+            map.mergePackages(classNames[merges[i]], classNames[merges[i + 1]]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ClassOrganizeMap compacted() {
+        return map.compacted();
+    }
+
+    @Benchmark
+    public ClassOrganizeMap compact() {
+        return map.compact();
+    }
+
+    @Benchmark
+    public ClassOrganizeMap singlePackagesToZero() {
+        return map.singlePackagesToZero();
+    }
+
+    @Benchmark
+    public ClassOrganizeMap singlePackagesToZeroCompacted() {
+        return map.singlePackagesToZero().compacted();
+    }
+
+    @Benchmark
+    public ClassOrganizeMap singlePackagesToZeroCompact() {
+        return map.singlePackagesToZero().compact();
+    }
+
+    @Benchmark
+    public FrozenClassOrganizeMap freeze() {
+        return map.freeze();
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.gaming32.classorganizer.benchmark;
+
+import io.github.gaming32.classorganizer.ClassOrganizeMap;
+import io.github.gaming32.classorganizer.ClassOrganizer;
+import io.github.gaming32.classorganizer.OrganizeListener;
+import io.github.gaming32.classorganizer.ScanEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Organizes a synthetic corpus from memory, so the numbers reflect summarizing and partitioning rather than disk.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class OrganizeBenchmark {
+    @Param({"1000", "10000", "50000"})
+    public int classCount;
+
+    @Param({"0.05", "0.3"})
+    public double packagePrivateDensity;
+
+    @Param({"2", "8"})
+    public int inheritanceDepth;
+
+    @Param({"0.1"})
+    public double protectedDensity;
+
+    @Param({"0.05"})
+    public double invokeDynamicDensity;
+
+    @Param({"0.05"})
+    public double annotationDensity;
+
+    @Param({"ASM", "CONSTANT_POOL"})
+    public ScanEngine engine;
+
+    private SyntheticCorpus corpus;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        corpus = SyntheticCorpus.builder()
+            .classCount(classCount)
+            .packagePrivateDensity(packagePrivateDensity)
+            .inheritanceDepth(inheritanceDepth)
+            .protectedDensity(protectedDensity)
+            .invokeDynamicDensity(invokeDynamicDensity)
+            .annotationDensity(annotationDensity)
+            .build();
+    }
+
+    @Benchmark
+    public ClassOrganizeMap organize() throws IOException {
+        return ClassOrganizer.organize(corpus, engine, OrganizeListener.NONE);
+    }
+}
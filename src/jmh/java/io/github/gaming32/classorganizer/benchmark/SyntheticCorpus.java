@@ -0,0 +1,348 @@
+package io.github.gaming32.classorganizer.benchmark;
+
+import io.github.gaming32.classorganizer.ClassSource;
+import org.objectweb.asm.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates an in-memory set of class files shaped like an obfuscated jar: a few original packages, some
+ * package-private classes and members, protected members reached both through and around inheritance, and
+ * optional invokedynamic and annotation usage.
+ * <p>
+ * The classes are never loaded, so they only need to be well-formed, not verifiable.
+ */
+public final class SyntheticCorpus implements ClassSource {
+    private static final String OBJECT = "java/lang/Object";
+    private static final String ENUM_DESC = "Ljava/lang/annotation/RetentionPolicy;";
+    private static final Handle METAFACTORY = new Handle(
+        Opcodes.H_INVOKESTATIC,
+        "java/lang/invoke/LambdaMetafactory",
+        "metafactory",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+            "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)" +
+            "Ljava/lang/invoke/CallSite;",
+        false
+    );
+
+    private final List<String> classNames;
+    private final byte[][] classFiles;
+
+    private SyntheticCorpus(List<String> classNames, byte[][] classFiles) {
+        this.classNames = classNames;
+        this.classFiles = classFiles;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<String> classNames() {
+        return classNames;
+    }
+
+    @Override
+    public byte[] read(int index) {
+        return classFiles[index];
+    }
+
+    public long totalBytes() {
+        long result = 0;
+        for (final byte[] classFile : classFiles) {
+            result += classFile.length;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the corpus out as a directory of class files, for benchmarking disk input.
+     */
+    public void writeTo(Path root) throws IOException {
+        for (int i = 0; i < classFiles.length; i++) {
+            final Path path = root.resolve(classNames.get(i) + ".class");
+            Files.createDirectories(path.getParent());
+            try (OutputStream out = Files.newOutputStream(path)) {
+                out.write(classFiles[i]);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int classCount = 1000;
+        private double packagePrivateDensity = 0.1;
+        private int inheritanceDepth = 4;
+        private double protectedDensity = 0.1;
+        private double invokeDynamicDensity = 0.05;
+        private double annotationDensity = 0.05;
+        private int membersPerClass = 8;
+        private int referencesPerMethod = 6;
+        private double locality = 0.95;
+        private long seed = 0x5eed;
+
+        private Builder() {
+        }
+
+        public Builder classCount(int classCount) {
+            this.classCount = classCount;
+            return this;
+        }
+
+        /**
+         * @param packagePrivateDensity The fraction of classes and members that are package-private
+         */
+        public Builder packagePrivateDensity(double packagePrivateDensity) {
+            this.packagePrivateDensity = packagePrivateDensity;
+            return this;
+        }
+
+        /**
+         * @param inheritanceDepth The maximum length of superclass chains within the corpus
+         */
+        public Builder inheritanceDepth(int inheritanceDepth) {
+            this.inheritanceDepth = inheritanceDepth;
+            return this;
+        }
+
+        /**
+         * @param protectedDensity The fraction of members that are protected
+         */
+        public Builder protectedDensity(double protectedDensity) {
+            this.protectedDensity = protectedDensity;
+            return this;
+        }
+
+        /**
+         * @param invokeDynamicDensity The fraction of methods that contain an invokedynamic instruction
+         */
+        public Builder invokeDynamicDensity(double invokeDynamicDensity) {
+            this.invokeDynamicDensity = invokeDynamicDensity;
+            return this;
+        }
+
+        /**
+         * @param annotationDensity The fraction of classes and methods that carry an annotation
+         */
+        public Builder annotationDensity(double annotationDensity) {
+            this.annotationDensity = annotationDensity;
+            return this;
+        }
+
+        public Builder membersPerClass(int membersPerClass) {
+            this.membersPerClass = membersPerClass;
+            return this;
+        }
+
+        public Builder referencesPerMethod(int referencesPerMethod) {
+            this.referencesPerMethod = referencesPerMethod;
+            return this;
+        }
+
+        /**
+         * @param locality The fraction of references that stay within the referencing class's package
+         */
+        public Builder locality(double locality) {
+            this.locality = locality;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticCorpus build() {
+            final Random random = new Random(seed);
+            final int packageCount = Math.max(1, (int)Math.sqrt(classCount));
+            final Layout layout = new Layout(
+                new String[classCount],
+                new int[classCount],
+                new int[packageCount][],
+                new int[classCount],
+                new int[classCount],
+                new int[classCount][membersPerClass]
+            );
+            final int[] depth = new int[classCount];
+            final int[] packageSizes = new int[packageCount];
+            for (int i = 0; i < classCount; i++) {
+                final int pkg = random.nextInt(packageCount);
+                layout.packages[i] = pkg;
+                layout.names[i] = "p" + pkg + "/C" + i;
+                layout.classAccess[i] = random.nextDouble() < packagePrivateDensity ? 0 : Opcodes.ACC_PUBLIC;
+                packageSizes[pkg]++;
+                layout.superclass[i] = -1;
+                if (i > 0 && inheritanceDepth > 0 && random.nextBoolean()) {
+                    final int parent = random.nextInt(i);
+                    if (depth[parent] < inheritanceDepth && layout.canSeeClass(i, parent)) {
+                        layout.superclass[i] = parent;
+                        depth[i] = depth[parent] + 1;
+                    }
+                }
+                for (int m = 0; m < membersPerClass; m++) {
+                    final double roll = random.nextDouble();
+                    if (roll < packagePrivateDensity) {
+                        layout.memberAccess[i][m] = 0;
+                    } else if (roll < packagePrivateDensity + protectedDensity) {
+                        layout.memberAccess[i][m] = Opcodes.ACC_PROTECTED;
+                    } else {
+                        layout.memberAccess[i][m] = Opcodes.ACC_PUBLIC;
+                    }
+                }
+            }
+            for (int i = 0; i < packageCount; i++) {
+                layout.packageClasses[i] = new int[packageSizes[i]];
+                packageSizes[i] = 0;
+            }
+            for (int i = 0; i < classCount; i++) {
+                final int pkg = layout.packages[i];
+                layout.packageClasses[pkg][packageSizes[pkg]++] = i;
+            }
+
+            final byte[][] classFiles = new byte[classCount][];
+            for (int i = 0; i < classCount; i++) {
+                classFiles[i] = generateClass(random, layout, i);
+            }
+            return new SyntheticCorpus(List.of(layout.names), classFiles);
+        }
+
+        private byte[] generateClass(Random random, Layout layout, int index) {
+            final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            final int superclass = layout.superclass[index];
+            writer.visit(
+                Opcodes.V17,
+                layout.classAccess[index] | Opcodes.ACC_SUPER,
+                layout.names[index],
+                null,
+                superclass >= 0 ? layout.names[superclass] : OBJECT,
+                null
+            );
+            if (random.nextDouble() < annotationDensity) {
+                annotate(writer.visitAnnotation("L" + layout.names[pickClass(random, layout, index)] + ";", true));
+            }
+
+            // Fields and methods alternate, so member m is a field when m is even
+            for (int m = 0; m < membersPerClass; m += 2) {
+                writer.visitField(layout.memberAccess[index][m], "f" + m, "I", null, null).visitEnd();
+            }
+            for (int m = 1; m < membersPerClass; m += 2) {
+                final MethodVisitor method = writer.visitMethod(
+                    layout.memberAccess[index][m], "m" + m, "()V", null, null
+                );
+                if (random.nextDouble() < annotationDensity) {
+                    annotate(method.visitAnnotation("L" + layout.names[pickClass(random, layout, index)] + ";", true));
+                }
+                method.visitCode();
+                for (int r = 0; r < referencesPerMethod; r++) {
+                    emitReference(method, random, layout, index);
+                }
+                if (random.nextDouble() < invokeDynamicDensity) {
+                    final int target = pickClass(random, layout, index);
+                    final int member = pickMember(random, layout, index, target, 1);
+                    method.visitInvokeDynamicInsn(
+                        "run",
+                        "()Ljava/lang/Runnable;",
+                        METAFACTORY,
+                        Type.getType("()V"),
+                        member >= 0
+                            ? new Handle(Opcodes.H_INVOKESTATIC, layout.names[target], "m" + member, "()V", false)
+                            : new Handle(Opcodes.H_INVOKESTATIC, layout.names[index], "m1", "()V", false),
+                        Type.getType("()V")
+                    );
+                    method.visitInsn(Opcodes.POP);
+                }
+                method.visitInsn(Opcodes.RETURN);
+                method.visitMaxs(0, 0);
+                method.visitEnd();
+            }
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+
+        private void emitReference(MethodVisitor method, Random random, Layout layout, int index) {
+            // Protected references prefer ancestors, so that some are inherited and some aren't
+            final int target = layout.superclass[index] >= 0 && random.nextBoolean()
+                ? layout.superclass[index]
+                : pickClass(random, layout, index);
+            final String owner = layout.names[target];
+            final int kind = random.nextInt(4);
+            final int member = kind < 2 ? -1 : pickMember(random, layout, index, target, kind & 1);
+            if (member < 0) {
+                if ((kind & 1) == 0) {
+                    method.visitTypeInsn(Opcodes.NEW, owner);
+                } else {
+                    method.visitLdcInsn(Type.getObjectType(owner));
+                }
+                method.visitInsn(Opcodes.POP);
+            } else if ((member & 1) == 0) {
+                method.visitFieldInsn(Opcodes.GETSTATIC, owner, "f" + member, "I");
+                method.visitInsn(Opcodes.POP);
+            } else {
+                method.visitMethodInsn(Opcodes.INVOKESTATIC, owner, "m" + member, "()V", false);
+            }
+        }
+
+        /**
+         * Picks a class that {@code from} is allowed to refer to, usually in the same package.
+         */
+        private int pickClass(Random random, Layout layout, int from) {
+            if (random.nextDouble() >= locality) {
+                final int target = random.nextInt(layout.names.length);
+                if (layout.canSeeClass(from, target)) {
+                    return target;
+                }
+            }
+            final int[] samePackage = layout.packageClasses[layout.packages[from]];
+            return samePackage[random.nextInt(samePackage.length)];
+        }
+
+        /**
+         * Picks a field (when {@code parity} is 0) or method (when it's 1) of {@code target} that {@code from} is
+         * allowed to refer to.
+         * @return The member, or {@code -1} if there wasn't one
+         */
+        private int pickMember(Random random, Layout layout, int from, int target, int parity) {
+            final int choices = (membersPerClass - parity + 1) / 2;
+            if (choices <= 0) {
+                return -1;
+            }
+            final int member = random.nextInt(choices) * 2 + parity;
+            final int access = layout.memberAccess[target][member];
+            if (access == Opcodes.ACC_PUBLIC || layout.packages[from] == layout.packages[target]) {
+                return member;
+            }
+            return access == Opcodes.ACC_PROTECTED && layout.isAncestor(target, from) ? member : -1;
+        }
+
+        private void annotate(AnnotationVisitor annotation) {
+            annotation.visitEnum("value", ENUM_DESC, "RUNTIME");
+            annotation.visit("type", Type.getObjectType(OBJECT));
+            annotation.visitEnd();
+        }
+    }
+    private record Layout(
+        String[] names,
+        int[] packages,
+        int[][] packageClasses,
+        int[] classAccess,
+        int[] superclass,
+        int[][] memberAccess
+    ) {
+        boolean canSeeClass(int from, int target) {
+            return classAccess[target] == Opcodes.ACC_PUBLIC || packages[from] == packages[target];
+        }
+
+        boolean isAncestor(int ancestor, int of) {
+            for (int clazz = superclass[of]; clazz >= 0; clazz = superclass[clazz]) {
+                if (clazz == ancestor) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
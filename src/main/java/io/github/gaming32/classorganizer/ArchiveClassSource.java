@@ -0,0 +1,74 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipException;
+
+/**
+ * Reads class files straight out of a memory-mapped zip archive. Versioned classes of multi-release jars and module
+ * descriptors are skipped.
+ */
+final class ArchiveClassSource implements ClassSource {
+    private final ZipArchive archive;
+    private final List<String> classNames;
+    private final int[] entries;
+
+    ArchiveClassSource(Path archive) throws IOException {
+        this(new ZipArchive(archive));
+    }
+
+    ArchiveClassSource(ZipArchive archive) throws ZipException {
+        this.archive = archive;
+        final List<String> names = new ArrayList<>();
+        final Set<String> seen = new HashSet<>();
+        final int[] entries = new int[archive.entryCount()];
+        for (int entry = 0; entry < archive.entryCount(); entry++) {
+            final String name = archive.name(entry);
+            if (!name.endsWith(".class") || name.endsWith("/") || !isOrganized(name)) continue;
+            if ((archive.flags(entry) & ZipArchive.ENCRYPTED_FLAG) != 0) {
+                throw new ZipException(name + " is encrypted");
+            }
+            final int method = archive.method(entry);
+            if (method != ZipArchive.STORED && method != ZipArchive.DEFLATED) {
+                throw new ZipException(name + " uses unsupported compression method " + method);
+            }
+            // Deflated entries can be larger than the whole archive, so this isn't an offset into it
+            if (archive.size(entry) > Integer.MAX_VALUE - 8) {
+                throw new ZipException(name + " is too large");
+            }
+            final String className = name.substring(0, name.length() - 6);
+            if (!seen.add(className)) continue;
+            entries[names.size()] = entry;
+            names.add(className);
+        }
+        classNames = Collections.unmodifiableList(names);
+        this.entries = Arrays.copyOf(entries, names.size());
+    }
+
+    /**
+     * Versioned classes of a multi-release jar stand in for their base class on newer Java versions, so they aren't
+     * classes of their own, and a module descriptor isn't in any package. Neither is organized, like neither is moved
+     * by {@link JarRepackager}.
+     */
+    private static boolean isOrganized(String name) {
+        return !name.startsWith("META-INF/versions/") && !name.equals("module-info.class") &&
+            !name.endsWith("/module-info.class");
+    }
+
+    @Override
+    public List<String> classNames() {
+        return classNames;
+    }
+
+    @Override
+    public byte[] read(int index) throws IOException {
+        return archive.read(entries[index]);
+    }
+
+    @Override
+    public long stamp(int index) {
+        final int entry = entries[index];
+        return (long)archive.crc(entry) << 32 | (int)archive.size(entry);
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The superclasses and interfaces of every class being organized, by dense class id. This is built once per run, so
+ * that subclass checks and member lookups don't walk the hierarchy again for every reference. {@link ClassWatcher}
+ * patches it with {@link #update} instead, which only revisits the classes under the ones that changed.
+ * <p>
+ * Classes outside the organized set are unknown, so the hierarchy stops at them.
+ */
+final class ClassHierarchy {
+    private static final int[] EMPTY = new int[0];
+    private static final int ANCESTOR_CHUNK = 256;
+
+    private int[] superIds;
+    private int[][] interfaceIds;
+    /**
+     * Every known superclass and superinterface of each class, in member lookup order. The first
+     * {@code superclassCounts[id]} of them are the superclasses, nearest first.
+     */
+    private int[][] ancestors;
+    private int[] superclassCounts;
+    /**
+     * Whether a class's superclass chain reaches a class outside the organized set, so some of its superclasses are
+     * unknown
+     */
+    private boolean[] openChain;
+    /**
+     * The classes that directly extend or implement each class. These are only needed to update the hierarchy, so
+     * they are built by the first update.
+     */
+    private IntList[] subtypes;
+
+    ClassHierarchy(StringIntMap classIds, ClassSummary[] summaries, Workers workers) {
+        final int count = summaries.length;
+        superIds = new int[count];
+        interfaceIds = new int[count][];
+        ancestors = new int[count][];
+        superclassCounts = new int[count];
+        openChain = new boolean[count];
+        for (int id = 0; id < count; id++) {
+            resolveSupertypes(id, classIds, summaries[id]);
+        }
+        workers.forEach(count, ANCESTOR_CHUNK, (start, end) -> {
+            for (int id = start; id < end; id++) {
+                findAncestors(id, summaries);
+            }
+        });
+    }
+
+    private void resolveSupertypes(int id, StringIntMap classIds, ClassSummary summary) {
+        if (summary == null) {
+            superIds[id] = -1;
+            interfaceIds[id] = EMPTY;
+            return;
+        }
+        superIds[id] = summary.superName != null ? classIds.get(summary.superName) : -1;
+        final IntList known = new IntList(summary.interfaces.length);
+        for (final String intf : summary.interfaces) {
+            final int interfaceId = classIds.get(intf);
+            if (interfaceId >= 0) {
+                known.add(interfaceId);
+            }
+        }
+        interfaceIds[id] = known.size() == 0 ? EMPTY : known.toArray();
+    }
+
+    /**
+     * Lists superclasses nearest first, then superinterfaces breadth-first. This is the order the JVM resolves
+     * methods in. Fields are resolved through interfaces first, but javac rejects field references that this would
+     * resolve differently, as they are ambiguous.
+     */
+    private void findAncestors(int id, ClassSummary[] summaries) {
+        final IntList result = new IntList();
+        int top = id;
+        boolean cycle = false;
+        for (int superId = superIds[id]; superId >= 0; superId = superIds[superId]) {
+            if (superId == id || contains(result, superId)) {
+                // Only a broken class path has a superclass cycle. Treat the ancestors of its classes as unknown.
+                cycle = true;
+                break;
+            }
+            result.add(superId);
+            top = superId;
+        }
+        superclassCounts[id] = result.size();
+        openChain[id] = cycle || summaries[top] != null && summaries[top].superName != null;
+        for (final int interfaceId : interfaceIds[id]) {
+            addInterface(result, interfaceId);
+        }
+        for (int i = 0; i < result.size(); i++) {
+            for (final int interfaceId : interfaceIds[result.get(i)]) {
+                addInterface(result, interfaceId);
+            }
+        }
+        ancestors[id] = result.size() == 0 ? EMPTY : result.toArray();
+    }
+
+    private static void addInterface(IntList ancestors, int interfaceId) {
+        if (!contains(ancestors, interfaceId)) {
+            ancestors.add(interfaceId);
+        }
+    }
+
+    private static boolean contains(IntList list, int value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether {@code subId} extends {@code superId}, directly or indirectly. A class doesn't extend itself.
+     */
+    boolean isSubclass(int subId, int superId) {
+        final int[] ancestors = this.ancestors[subId];
+        for (int i = 0, count = superclassCounts[subId]; i < count; i++) {
+            if (ancestors[i] == superId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether some of the superclasses of {@code id} are outside the organized set
+     */
+    boolean hasUnknownSuperclass(int id) {
+        return openChain[id];
+    }
+
+    /**
+     * @return Whether one of the ancestors of {@code id} is in {@code classes}
+     */
+    boolean inheritsFrom(int id, BitSet classes) {
+        for (final int ancestor : ancestors[id]) {
+            if (classes.get(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The classes in {@code classes}, and every class that extends or implements one of them
+     */
+    BitSet withSubtypes(BitSet classes) {
+        final BitSet result = (BitSet)classes.clone();
+        if (subtypes != null) {
+            // Walk down from the classes instead of checking every class
+            final IntList pending = new IntList();
+            classes.stream().forEach(pending::add);
+            for (int i = 0; i < pending.size(); i++) {
+                final IntList direct = subtypes[pending.get(i)];
+                for (int j = 0; direct != null && j < direct.size(); j++) {
+                    final int subtype = direct.get(j);
+                    if (!result.get(subtype)) {
+                        result.set(subtype);
+                        pending.add(subtype);
+                    }
+                }
+            }
+            return result;
+        }
+        for (int id = 0; id < ancestors.length; id++) {
+            if (!result.get(id) && inheritsFrom(id, classes)) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the supertypes of {@code ids} again, and finds the ancestors of them and everything under them again.
+     * This has to be called for every class whose superclass or interfaces changed, and every class whose supertypes
+     * were added or removed.
+     * @param summaries The summary of every class by id, which may have grown since this was built. Classes that
+     *                  don't exist anymore have a {@code null} summary.
+     * @return The classes whose ancestors were found again: {@code ids}, and every class that inherits from one
+     */
+    BitSet update(BitSet ids, StringIntMap classIds, ClassSummary[] summaries, Workers workers) {
+        if (summaries.length > superIds.length) {
+            grow(summaries.length);
+        }
+        if (subtypes == null) {
+            subtypes = new IntList[superIds.length];
+            for (int id = 0; id < superIds.length; id++) {
+                linkSupertypes(id, true);
+            }
+        }
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            linkSupertypes(id, false);
+            resolveSupertypes(id, classIds, summaries[id]);
+            linkSupertypes(id, true);
+        }
+        final BitSet result = withSubtypes(ids);
+        final int[] found = result.stream().toArray();
+        workers.forEach(found.length, ANCESTOR_CHUNK, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                findAncestors(found[i], summaries);
+            }
+        });
+        return result;
+    }
+
+    private void grow(int count) {
+        final int oldCount = superIds.length;
+        superIds = Arrays.copyOf(superIds, count);
+        interfaceIds = Arrays.copyOf(interfaceIds, count);
+        ancestors = Arrays.copyOf(ancestors, count);
+        superclassCounts = Arrays.copyOf(superclassCounts, count);
+        openChain = Arrays.copyOf(openChain, count);
+        if (subtypes != null) {
+            subtypes = Arrays.copyOf(subtypes, count);
+        }
+        Arrays.fill(superIds, oldCount, count, -1);
+        Arrays.fill(interfaceIds, oldCount, count, EMPTY);
+        Arrays.fill(ancestors, oldCount, count, EMPTY);
+    }
+
+    /**
+     * Adds {@code id} to the subtypes of its direct supertypes, or removes it from them
+     */
+    private void linkSupertypes(int id, boolean add) {
+        if (superIds[id] >= 0) {
+            linkSubtype(superIds[id], id, add);
+        }
+        for (final int interfaceId : interfaceIds[id]) {
+            linkSubtype(interfaceId, id, add);
+        }
+    }
+
+    private void linkSubtype(int supertype, int subtype, boolean add) {
+        IntList direct = subtypes[supertype];
+        if (add) {
+            if (direct == null) {
+                subtypes[supertype] = direct = new IntList(4);
+            }
+            direct.add(subtype);
+        } else {
+            direct.removeValue(subtype);
+        }
+    }
+
+    /**
+     * Finds the class that declares a member referenced through {@code ownerId}: the owner itself, or else the
+     * nearest ancestor that declares it.
+     * @param memberAccess The access index from {@code ClassOrganizer}, by {@code (class id, name, descriptor)}
+     * @return The id of the declaring class, or {@code -1} if no known class declares it
+     */
+    int resolveMember(int ownerId, int name, int descriptor, IntTripleMap memberAccess) {
+        if (memberAccess.get(ownerId, name, descriptor) >= 0) {
+            return ownerId;
+        }
+        for (final int ancestor : ancestors[ownerId]) {
+            if (memberAccess.get(ancestor, name, descriptor) >= 0) {
+                return ancestor;
+            }
+        }
+        return -1;
+    }
+}
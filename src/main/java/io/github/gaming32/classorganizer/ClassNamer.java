@@ -0,0 +1,173 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Picks the new name of every class in a map, for both {@link JarRepackager} and {@link MappingWriter}, so that a
+ * mapping file always names classes the way the repackaged jar has them.
+ * <p>
+ * Classes are named package by package in id order, and class by class in name order. A class keeps its simple name
+ * unless another class in its new package already has it, in which case a number is added to the end. Classes that
+ * keep their names, because they aren't movable or aren't in the map, have their names taken before any class is
+ * named. Only the simple names of one package are tracked at a time, and naming a class only allocates if its simple
+ * name is already taken.
+ */
+final class ClassNamer {
+    interface Action {
+        /**
+         * @param className The internal name of the class
+         * @param packageName The internal name of its new package. An empty name is the default package.
+         * @param simpleStart Where the simple name of the class starts in {@code className}
+         * @param suffix The number added to the end of its simple name, or {@code 0} if there isn't one
+         */
+        void accept(String className, String packageName, int simpleStart, int suffix) throws IOException;
+    }
+
+    private final FrozenClassOrganizeMap map;
+    private final IntFunction<String> packageNames;
+    // The classes that keep their names, by package
+    private final Map<String, List<String>> fixedClasses = new HashMap<>();
+    private int largestFixedPackage;
+
+    /**
+     * @param otherClasses Classes outside the map that keep their names, such as the classes of a jar that the map
+     *                     doesn't have. Classes in the map are ignored.
+     */
+    ClassNamer(FrozenClassOrganizeMap map, IntFunction<String> packageNames, Collection<String> otherClasses) {
+        this.map = map;
+        this.packageNames = packageNames;
+        for (final String clazz : otherClasses) {
+            if (!map.containsClass(clazz)) {
+                addFixed(clazz);
+            }
+        }
+        for (int i = 0; i < map.classCount(); i++) {
+            final String clazz = map.packageClass(i);
+            if (!JarRepackager.isMovable(clazz)) {
+                addFixed(clazz);
+            }
+        }
+    }
+
+    private void addFixed(String clazz) {
+        final String packageName = clazz.substring(0, Math.max(clazz.lastIndexOf('/'), 0));
+        final List<String> classes = fixedClasses.computeIfAbsent(packageName, k -> new ArrayList<>());
+        classes.add(clazz);
+        largestFixedPackage = Math.max(largestFixedPackage, classes.size());
+    }
+
+    /**
+     * @return The new internal name of a class, from the arguments it was given to an {@link Action} with
+     */
+    static String newName(String className, String packageName, int simpleStart, int suffix) {
+        final StringBuilder result = new StringBuilder(packageName.length() + className.length() - simpleStart + 5);
+        if (!packageName.isEmpty()) {
+            result.append(packageName).append('/');
+        }
+        result.append(className, simpleStart, className.length());
+        if (suffix != 0) {
+            result.append('_').append(suffix);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Names every movable class in the map, passing each to {@code action} in naming order.
+     * @param included Classes it rejects are neither named nor take a name, like classes of the map that aren't in
+     *                 the jar being repackaged
+     * @throws IllegalArgumentException If two packages have the same name, since their classes couldn't be told
+     *                                  apart by their names
+     */
+    void forEach(Predicate<String> included, Action action) throws IOException {
+        final SimpleNames simpleNames = new SimpleNames(map.largestPackageSize() + largestFixedPackage);
+        final Set<String> seenPackages = new HashSet<>();
+        for (int packageIndex = 0; packageIndex < map.packageCount(); packageIndex++) {
+            final String packageName = packageNames.apply(map.packageIdAt(packageIndex));
+            if (!seenPackages.add(packageName)) {
+                throw new IllegalArgumentException("More than one package is named \"" + packageName + '"');
+            }
+            simpleNames.clear();
+            final List<String> fixed = fixedClasses.get(packageName);
+            if (fixed != null) {
+                for (final String clazz : fixed) {
+                    simpleNames.add(clazz, clazz.lastIndexOf('/') + 1);
+                }
+            }
+            for (int i = map.packageStart(packageIndex); i < map.packageStart(packageIndex + 1); i++) {
+                final String className = map.packageClass(i);
+                if (!JarRepackager.isMovable(className) || !included.test(className)) continue;
+                final int simpleStart = className.lastIndexOf('/') + 1;
+                int suffix = 0;
+                if (!simpleNames.add(className, simpleStart)) {
+                    // Clashes are rare, so these names can be allocated
+                    final String simpleName = className.substring(simpleStart);
+                    suffix = 2;
+                    while (!simpleNames.add(simpleName + '_' + suffix, 0)) {
+                        suffix++;
+                    }
+                }
+                action.accept(className, packageName, simpleStart, suffix);
+            }
+        }
+    }
+
+    /**
+     * A set of simple names, each kept as the end of a longer string so that adding the simple name of a class
+     * doesn't allocate. Only the slots that are used are cleared, so clearing takes time in the size of the set.
+     */
+    private static final class SimpleNames {
+        private final String[] strings;
+        private final int[] starts;
+        private final int[] usedSlots;
+        private int size;
+
+        SimpleNames(int maxSize) {
+            final int capacity = Integer.highestOneBit(Math.max(maxSize, 1) * 2 - 1) << 1;
+            strings = new String[capacity];
+            starts = new int[capacity];
+            usedSlots = new int[maxSize];
+        }
+
+        /**
+         * @return Whether the end of {@code string} from {@code start} wasn't already in the set
+         */
+        boolean add(String string, int start) {
+            int hash = 0;
+            for (int i = start; i < string.length(); i++) {
+                hash = 31 * hash + string.charAt(i);
+            }
+            final int mask = strings.length - 1;
+            final int length = string.length() - start;
+            for (int slot = (hash ^ hash >>> 16) & mask; ; slot = slot + 1 & mask) {
+                final String existing = strings[slot];
+                if (existing == null) {
+                    strings[slot] = string;
+                    starts[slot] = start;
+                    usedSlots[size++] = slot;
+                    return true;
+                }
+                final int existingStart = starts[slot];
+                if (existing.length() - existingStart == length &&
+                    existing.regionMatches(existingStart, string, start, length)) {
+                    return false;
+                }
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                strings[usedSlots[i]] = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -1,149 +1,288 @@
 package io.github.gaming32.classorganizer;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
+/**
+ * Assignment of classes to numbered packages.
+ * <p>
+ * Internally this is a disjoint-set forest over dense class ids with union by size and path compression, so merging
+ * two packages is near constant time regardless of how many classes they hold. The package id of a set is stored on
+ * its root. The {@code Map}/{@code Set} views returned by {@link #getPackages()} and friends are only built when
+ * requested, and are rebuilt after the map is modified.
+ * <p>
+ * Only methods that modify the map compress paths, so a map that isn't being modified can be read from many threads
+ * at once. Modifying it while it is read needs outside synchronization, like with a {@link HashMap}.
+ */
 public class ClassOrganizeMap {
-    private final Map<String, Integer> classToPackage = new HashMap<>();
-    private final NavigableMap<Integer, Set<String>> packageToClasses = new TreeMap<>();
+    private final StringIntMap classIds;
+    private final IntIntMap packageRoots;
+    private final BitSet removed;
+    private String[] names;
+    private int[] parent;
+    private int[] size;
+    private int[] label;
+    private int idCount;
+    private int classCount;
+
+    private volatile NavigableMap<Integer, Set<String>> packagesView;
 
     public ClassOrganizeMap(Map<String, Integer> classToPackage) {
-        this.classToPackage.putAll(classToPackage);
+        this(classToPackage.size());
         for (final var entry : classToPackage.entrySet()) {
-            packageToClasses.computeIfAbsent(entry.getValue(), k -> new HashSet<>()).add(entry.getKey());
+            addClass(entry.getKey(), entry.getValue());
         }
     }
 
     public ClassOrganizeMap() {
+        this(16);
     }
 
-    public void addClass(String clazz) {
-        addClass(clazz, classToPackage.size());
+    ClassOrganizeMap(int expectedClasses) {
+        classIds = new StringIntMap(expectedClasses);
+        packageRoots = new IntIntMap(expectedClasses);
+        removed = new BitSet();
+        names = new String[Math.max(expectedClasses, 16)];
+        parent = new int[names.length];
+        size = new int[names.length];
+        label = new int[names.length];
     }
 
-    public void addClass(String clazz, int pkg) {
-        addClass(clazz, Integer.valueOf(pkg));
+    /**
+     * Copies the arrays behind {@code other} as they are, without re-adding any classes.
+     */
+    private ClassOrganizeMap(ClassOrganizeMap other) {
+        classIds = new StringIntMap(other.classIds);
+        packageRoots = new IntIntMap(other.packageRoots);
+        removed = (BitSet)other.removed.clone();
+        names = Arrays.copyOf(other.names, Math.max(other.idCount, 16));
+        parent = Arrays.copyOf(other.parent, names.length);
+        size = Arrays.copyOf(other.size, names.length);
+        label = Arrays.copyOf(other.label, names.length);
+        idCount = other.idCount;
+        classCount = other.classCount;
     }
 
-    void addClass(String clazz, Integer pkg) {
-        final Integer oldPackage = classToPackage.put(clazz, pkg);
-        if (pkg.equals(oldPackage)) return;
-        maybeRemoveFrom(clazz, oldPackage);
-        packageToClasses.computeIfAbsent(pkg, k -> new HashSet<>()).add(clazz);
+    public void addClass(String clazz) {
+        addClass(clazz, classCount);
+    }
+
+    public void addClass(String clazz, int pkg) {
+        final int existing = liveId(clazz);
+        if (existing >= 0) {
+            if (label[find(existing)] == pkg) return;
+            // A class can't be taken out of the middle of a set, so it gets a new id instead
+            removeClass(existing);
+        }
+        final int id = newId(clazz);
+        final int root = packageRoots.get(pkg);
+        if (root >= 0) {
+            parent[id] = root;
+            size[root]++;
+        } else {
+            size[id] = 1;
+            label[id] = pkg;
+            packageRoots.put(pkg, id);
+        }
+        classCount++;
+        packagesView = null;
     }
 
     public void removeClass(String clazz) {
-        maybeRemoveFrom(clazz, classToPackage.remove(clazz));
+        final int id = liveId(clazz);
+        if (id >= 0) {
+            removeClass(id);
+        }
     }
 
-    private void maybeRemoveFrom(String clazz, Integer oldPackage) {
-        if (oldPackage != null) {
-            final Set<String> oldClasses = packageToClasses.get(oldPackage);
-            oldClasses.remove(clazz);
-            if (oldClasses.isEmpty()) {
-                packageToClasses.remove(oldPackage);
-            }
+    private void removeClass(int id) {
+        final int root = find(id);
+        removed.set(id);
+        classCount--;
+        if (--size[root] == 0) {
+            packageRoots.remove(label[root]);
         }
+        packagesView = null;
     }
 
     public Integer getPackage(String clazz) {
-        return classToPackage.get(clazz);
+        final int id = liveId(clazz);
+        return id >= 0 ? label[root(id)] : null;
     }
 
     public Set<String> getClasses(int pkg) {
-        final Set<String> classes = packageToClasses.get(pkg);
-        return classes != null ? Collections.unmodifiableSet(classes) : Collections.emptySet();
+        return getPackages().getOrDefault(pkg, Collections.emptySet());
     }
 
     public NavigableSet<Integer> getPackagesIds() {
-        return Collections.unmodifiableNavigableSet(packageToClasses.navigableKeySet());
+        return getPackages().navigableKeySet();
     }
 
     public NavigableMap<Integer, Set<String>> getPackages() {
-        return Collections.unmodifiableNavigableMap(packageToClasses);
+        NavigableMap<Integer, Set<String>> view = packagesView;
+        if (view == null) {
+            packagesView = view = buildPackagesView();
+        }
+        return view;
     }
 
     public Set<String> getAllClasses() {
-        return Collections.unmodifiableSet(classToPackage.keySet());
+        return classSet();
     }
 
     public boolean containsClass(String clazz) {
-        return classToPackage.containsKey(clazz);
+        return liveId(clazz) >= 0;
     }
 
     public void mergePackages(String class1, String class2) {
-        final Integer pkg1 = classToPackage.get(class1);
-        if (pkg1 == null) {
+        final int id1 = liveId(class1);
+        if (id1 < 0) {
             throw new IllegalArgumentException(class1 + " not in this map");
         }
-        final Integer pkg2 = classToPackage.get(class2);
-        if (pkg2 == null) {
-            throw new IllegalArgumentException(class1 + " not in this map");
+        final int id2 = liveId(class2);
+        if (id2 < 0) {
+            throw new IllegalArgumentException(class2 + " not in this map");
         }
-        if (pkg1.equals(pkg2)) return;
-        mergePackages(pkg1, pkg2);
+        final int root1 = find(id1);
+        final int root2 = find(id2);
+        if (root1 == root2) return;
+        union(root1, root2, label[root1]);
     }
 
     public void mergePackages(int pkg1, int pkg2) {
         if (pkg1 == pkg2) return;
-        mergePackages(Integer.valueOf(pkg1), Integer.valueOf(pkg2));
-    }
-
-    void mergePackages(Integer pkg1, Integer pkg2) {
-        final Set<String> classesIn2 = packageToClasses.remove(pkg2);
-        packageToClasses.get(pkg1).addAll(classesIn2);
-        for (final String classIn2 : classesIn2) {
-            classToPackage.put(classIn2, pkg1);
+        final int root1 = packageRoots.get(pkg1);
+        if (root1 < 0) {
+            throw new IllegalArgumentException("Package " + pkg1 + " not in this map");
         }
+        final int root2 = packageRoots.get(pkg2);
+        if (root2 < 0) {
+            throw new IllegalArgumentException("Package " + pkg2 + " not in this map");
+        }
+        union(root1, root2, pkg1);
     }
 
     public int classCount() {
-        return classToPackage.size();
+        return classCount;
     }
 
     public int packageCount() {
-        return packageToClasses.size();
+        return packageRoots.size();
     }
 
     public Set<String> classSet() {
-        return Collections.unmodifiableSet(classToPackage.keySet());
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    int next = removed.nextClearBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < idCount;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= idCount) {
+                            throw new NoSuchElementException();
+                        }
+                        final String result = names[next];
+                        next = removed.nextClearBit(next + 1);
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return classCount;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String clazz && containsClass(clazz);
+            }
+        };
     }
 
     public Set<Integer> packageSet() {
-        return Collections.unmodifiableSet(packageToClasses.keySet());
+        return getPackagesIds();
+    }
+
+    /**
+     * Saves this map in a compact binary format that can be queried without loading it.
+     * @see MappedClassOrganizeMap#open
+     */
+    public void save(Path file) throws IOException {
+        MappedClassOrganizeMap.write(this, file);
+    }
+
+    /**
+     * Takes an immutable snapshot of this map that can be shared between threads. Later changes to this map don't
+     * affect it.
+     */
+    public FrozenClassOrganizeMap freeze() {
+        final String[] classNames = new String[classCount];
+        int i = 0;
+        for (int id = removed.nextClearBit(0); id < idCount; id = removed.nextClearBit(id + 1)) {
+            classNames[i++] = names[id];
+        }
+        Arrays.parallelSort(classNames);
+        final int[] classPackages = new int[classCount];
+        for (i = 0; i < classCount; i++) {
+            classPackages[i] = label[root(classIds.get(classNames[i]))];
+        }
+        return FrozenClassOrganizeMap.of(classNames, classPackages);
     }
 
     /**
      * Compacts the map such that the package numbers are 0 to {@code packageCount()}.
-     * @return A compacted copy.
+     * @return A compacted copy. Use {@link #compact} to avoid copying the map.
      */
     public ClassOrganizeMap compacted() {
-        final Map<Integer, Integer> remap = new HashMap<>();
-        for (final Integer pkg : packageToClasses.keySet()) {
-            remap.put(pkg, remap.size());
-        }
-        final ClassOrganizeMap result = new ClassOrganizeMap();
-        for (final var entry : packageToClasses.entrySet()) {
-            final Integer remapped = remap.get(entry.getKey());
-            for (final String clazz : entry.getValue()) {
-                result.classToPackage.put(clazz, remapped);
-            }
-            result.packageToClasses.put(remapped, new HashSet<>(entry.getValue()));
+        return new ClassOrganizeMap(this).compact();
+    }
+
+    /**
+     * Compacts the map in place such that the package numbers are 0 to {@code packageCount()}, keeping their order.
+     * Package numbers are only stored on the root of each package, so this takes time in the number of packages, not
+     * classes.
+     * @return {@code this} for chaining
+     */
+    public ClassOrganizeMap compact() {
+        final int[] packages = packageRoots.keys();
+        Arrays.sort(packages);
+        if (packages.length == 0 || packages[0] == 0 && packages[packages.length - 1] == packages.length - 1) {
+            return this;
         }
-        return result;
+        final int[] roots = new int[packages.length];
+        for (int i = 0; i < packages.length; i++) {
+            roots[i] = packageRoots.get(packages[i]);
+        }
+        packageRoots.clear();
+        for (int i = 0; i < roots.length; i++) {
+            label[roots[i]] = i;
+            packageRoots.put(i, roots[i]);
+        }
+        packagesView = null;
+        return this;
     }
 
     /**
      * Puts classes in packages by themselves into package 0.
-     * @return {@code this} for chaining. It is useful to do {@code map.singlePackagesToZero().compacted()}.
+     * @return {@code this} for chaining. It is useful to do {@code map.singlePackagesToZero().compact()}.
      */
     public ClassOrganizeMap singlePackagesToZero() {
-        if (classToPackage.isEmpty()) {
+        if (classCount == 0) {
             return this;
         }
 
+        final int[] packages = packageRoots.keys();
         boolean foundAny = false;
-        for (final Set<String> classes : packageToClasses.values()) {
-            if (classes.size() == 1) {
+        for (final int pkg : packages) {
+            if (size[packageRoots.get(pkg)] == 1) {
                 foundAny = true;
                 break;
             }
@@ -152,33 +291,112 @@ public class ClassOrganizeMap {
             return this;
         }
 
-        Set<String> packageZero = packageToClasses.computeIfAbsent(0, k -> new HashSet<>());
-        if (!packageZero.isEmpty()) {
-            final List<Integer> packages = new ArrayList<>(packageToClasses.keySet());
-            final int increment = 1 - packages.get(0);
-            Collections.reverse(packages);
-            for (final Integer packageId : packages) {
-                final Integer newPackage = packageId + increment;
-                final Set<String> classes = packageToClasses.remove(packageId);
-                packageToClasses.put(newPackage, classes);
-                for (final String clazz : classes) {
-                    classToPackage.put(clazz, newPackage);
-                }
+        // Single classes go into package 0, so if it's taken, every package shifts up to start at 1. Only the labels of
+        // roots change, and packages keep their order.
+        Arrays.sort(packages);
+        if (packageRoots.containsKey(0)) {
+            final int increment = 1 - packages[0];
+            final int[] roots = new int[packages.length];
+            for (int i = 0; i < packages.length; i++) {
+                roots[i] = packageRoots.get(packages[i]);
+            }
+            packageRoots.clear();
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] += increment;
+                label[roots[i]] = packages[i];
+                packageRoots.put(packages[i], roots[i]);
             }
-            packageZero = packageToClasses.computeIfAbsent(0, k -> new HashSet<>());
         }
 
-        final var it = packageToClasses.entrySet().iterator();
-        while (it.hasNext()) {
-            final var entry = it.next();
-            if (entry.getValue().size() == 1 && entry.getKey() != 0) {
-                final String clazz = entry.getValue().iterator().next();
-                packageZero.add(clazz);
-                classToPackage.put(clazz, 0);
-                it.remove();
+        for (final int pkg : packages) {
+            if (pkg == 0) continue;
+            final int root = packageRoots.get(pkg);
+            if (size[root] != 1) continue;
+            final int zeroRoot = packageRoots.get(0);
+            if (zeroRoot < 0) {
+                packageRoots.remove(pkg);
+                label[root] = 0;
+                packageRoots.put(0, root);
+            } else {
+                union(zeroRoot, root, 0);
             }
         }
+        packagesView = null;
 
         return this;
     }
+
+    private int liveId(String clazz) {
+        final int id = classIds.get(clazz);
+        return id >= 0 && !removed.get(id) ? id : -1;
+    }
+
+    private int newId(String clazz) {
+        if (idCount == names.length) {
+            final int capacity = idCount + (idCount >> 1);
+            names = Arrays.copyOf(names, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+            label = Arrays.copyOf(label, capacity);
+        }
+        final int id = idCount++;
+        names[id] = clazz;
+        parent[id] = id;
+        classIds.put(clazz, id);
+        return id;
+    }
+
+    private int find(int id) {
+        final int[] parent = this.parent;
+        while (parent[id] != id) {
+            // Path halving
+            final int grandparent = parent[parent[id]];
+            parent[id] = grandparent;
+            id = grandparent;
+        }
+        return id;
+    }
+
+    /**
+     * Finds the root of {@code id} like {@link #find}, but without compressing its path, so that reading the map never
+     * writes to it. Union by size keeps every path logarithmic anyway.
+     */
+    private int root(int id) {
+        final int[] parent = this.parent;
+        while (parent[id] != id) {
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void union(int root1, int root2, int pkg) {
+        packageRoots.remove(label[root1]);
+        packageRoots.remove(label[root2]);
+        final int root;
+        if (size[root1] < size[root2]) {
+            parent[root1] = root2;
+            size[root2] += size[root1];
+            root = root2;
+        } else {
+            parent[root2] = root1;
+            size[root1] += size[root2];
+            root = root1;
+        }
+        label[root] = pkg;
+        packageRoots.put(pkg, root);
+        packagesView = null;
+    }
+
+    private NavigableMap<Integer, Set<String>> buildPackagesView() {
+        final Map<Integer, Set<String>> sets = new HashMap<>(packageRoots.size() * 2);
+        for (int id = removed.nextClearBit(0); id < idCount; id = removed.nextClearBit(id + 1)) {
+            final int root = root(id);
+            sets.computeIfAbsent(label[root], k -> new HashSet<>(size[root] * 2)).add(names[id]);
+        }
+        final NavigableMap<Integer, Set<String>> result = new TreeMap<>();
+        for (final var entry : sets.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        return Collections.unmodifiableNavigableMap(result);
+    }
 }
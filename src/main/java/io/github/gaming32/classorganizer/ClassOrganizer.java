@@ -1,361 +1,859 @@
 package io.github.gaming32.classorganizer;
 
-import org.objectweb.asm.*;
-import org.objectweb.asm.signature.SignatureReader;
-import org.objectweb.asm.signature.SignatureVisitor;
+import org.objectweb.asm.Opcodes;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Modifier;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class ClassOrganizer {
+    private static final MergeCause[] MERGE_CAUSES = MergeCause.values();
+    // Edges are stored as the other class's id shifted left, with the cause of the edge in the low bits
+    static final int CAUSE_BITS = 2;
+    static final int CAUSE_MASK = (1 << CAUSE_BITS) - 1;
+    private static final int[] NO_EDGES = new int[0];
+    private static final int READ_CHUNK = 32;
+    static final int EDGE_CHUNK = 64;
+    private static final int MERGE_CHUNK = 1024;
+    private static final int MAX_PENDING_CLASSES = 4096;
+
+    /**
+     * Organizes a directory of class files or a jar/zip archive.
+     */
     public static ClassOrganizeMap organize(Path root) throws IOException {
-        final ClassOrganizeMap result = new ClassOrganizeMap(createInitial(root));
-        final Map<String, ClassReader> readers = openClasses(root, result.classSet());
-        final var accessMap = createAccessMap(readers);
-
-        for (final var entry : readers.entrySet()) {
-            final String className = entry.getKey();
-            final Integer thisPackage = result.getPackage(className);
-
-            class Checkers {
-                // No checkers bot for you, sorry
-                void checkSignature(String signature, boolean isSimpleType) {
-                    if (signature == null) return;
-                    final SignatureVisitor visitor = new SignatureVisitor(Opcodes.ASM9) {
-                        @Override
-                        public void visitClassType(String name) {
-                            checkClass(name);
-                        }
-                    };
-                    if (isSimpleType) {
-                        new SignatureReader(signature).acceptType(visitor);
-                    } else {
-                        new SignatureReader(signature).accept(visitor);
-                    }
-                }
+        return organize(root, OrganizeListener.NONE);
+    }
 
-                void checkType(Type type) {
-                    if (type.getSort() == Type.METHOD) {
-                        for (final Type arg : type.getArgumentTypes()) {
-                            checkType(arg);
-                        }
-                        checkType(type.getReturnType());
-                        return;
-                    }
-                    if (type.getSort() == Type.ARRAY) {
-                        checkType(type.getElementType());
-                        return;
-                    }
-                    if (type.getSort() != Type.OBJECT) return;
-                    checkClass(type.getInternalName());
-                }
+    /**
+     * Organizes a directory of class files or a jar/zip archive, reporting progress and statistics to
+     * {@code listener}.
+     */
+    public static ClassOrganizeMap organize(Path root, OrganizeListener listener) throws IOException {
+        return organize(root, ScanEngine.ASM, listener);
+    }
 
-                AnnotationVisitor checkAnnotation(String descriptor) {
-                    checkType(Type.getType(descriptor));
-                    return new AnnotationVisitor(Opcodes.ASM9) {
-                        @Override
-                        public void visit(String name, Object value) {
-                            checkObject(value);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
-                            checkType(Type.getType(descriptor));
-                            return this;
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitArray(String name) {
-                            return this;
-                        }
-
-                        @Override
-                        public void visitEnum(String name, String descriptor, String value) {
-                            final Type type = Type.getType(descriptor);
-                            checkMember(new MemberReference(type.getInternalName(), value, type));
-                        }
-                    };
-                }
+    /**
+     * Organizes a directory of class files or a jar/zip archive, reading classes with {@code engine}.
+     */
+    public static ClassOrganizeMap organize(
+        Path root, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        return organize(root, LibraryIndex.EMPTY, engine, listener);
+    }
 
-                void checkObject(Object value) {
-                    if (value instanceof Handle handle) {
-                        checkMember(new MemberReference(handle.getOwner(), handle.getName(), Type.getType(handle.getDesc())));
-                    } else if (value instanceof ConstantDynamic condy) {
-                        checkType(Type.getType(condy.getDescriptor()));
-                        checkObject(condy.getBootstrapMethod());
-                        for (int i = 0; i < condy.getBootstrapMethodArgumentCount(); i++) {
-                            checkObject(condy.getBootstrapMethodArgument(i));
-                        }
-                    } else if (value instanceof Type type) {
-                        checkType(type);
-                    }
+    /**
+     * Organizes a directory of class files or a jar/zip archive that depends on {@code libraries}.
+     */
+    public static ClassOrganizeMap organize(Path root, LibraryIndex libraries) throws IOException {
+        return organize(root, libraries, ScanEngine.ASM, OrganizeListener.NONE);
+    }
+
+    public static ClassOrganizeMap organize(
+        Path root, LibraryIndex libraries, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        recorder.start(OrganizePhase.OPEN);
+        try (ClassSource source = ClassSource.open(root)) {
+            recorder.end();
+            return recorder.finish(organize(source, libraries, engine, recorder, Workers.COMMON));
+        }
+    }
+
+    public static ClassOrganizeMap organize(ClassSource source) throws IOException {
+        return organize(source, OrganizeListener.NONE);
+    }
+
+    public static ClassOrganizeMap organize(ClassSource source, OrganizeListener listener) throws IOException {
+        return organize(source, ScanEngine.ASM, listener);
+    }
+
+    public static ClassOrganizeMap organize(
+        ClassSource source, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        return organize(source, LibraryIndex.EMPTY, engine, listener);
+    }
+
+    /**
+     * Organizes classes that depend on {@code libraries}. Library classes are only used to resolve references, and
+     * never end up in the result.
+     */
+    public static ClassOrganizeMap organize(
+        ClassSource source, LibraryIndex libraries, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        return recorder.finish(organize(source, libraries, engine, recorder, Workers.COMMON));
+    }
+
+    private static ClassOrganizeMap organize(
+        ClassSource source, LibraryIndex libraries, ScanEngine engine, OrganizeRecorder recorder, Workers workers
+    ) throws IOException {
+        final String[] classNames = source.classNames().toArray(new String[0]);
+        recorder.classCount(classNames.length);
+        recorder.start(OrganizePhase.READ);
+        final ClassSummary[] summaries = readSummaries(source, engine, recorder, workers);
+        recorder.end();
+        return organize(classNames, summaries, libraries, recorder, workers);
+    }
+
+    /**
+     * Organizes a directory of class files or a jar/zip archive on {@code executor}. See
+     * {@link #organizeAsync(ClassSource, LibraryIndex, ScanEngine, Executor, OrganizeListener)}.
+     */
+    public static CompletableFuture<ClassOrganizeMap> organizeAsync(
+        Path root, Executor executor, OrganizeListener listener
+    ) {
+        return organizeAsync(root, LibraryIndex.EMPTY, ScanEngine.ASM, executor, listener);
+    }
+
+    public static CompletableFuture<ClassOrganizeMap> organizeAsync(
+        Path root, LibraryIndex libraries, ScanEngine engine, Executor executor, OrganizeListener listener
+    ) {
+        return runAsync(executor, listener, (recorder, workers) -> {
+            recorder.start(OrganizePhase.OPEN);
+            try (ClassSource source = ClassSource.open(root)) {
+                recorder.end();
+                return organize(source, libraries, engine, recorder, workers);
+            }
+        });
+    }
+
+    /**
+     * Organizes classes on {@code executor} without blocking the calling thread. The work that would otherwise run on
+     * the common fork/join pool runs on the executor instead, as does the task that coordinates it. That task also
+     * does work while it waits, so the run can't deadlock even on a single-threaded executor. Reads are started with
+     * {@link ClassSource#readAsync}, which runs them on the executor too, like inflating the entries of an archive,
+     * unless the source has I/O threads of its own, like a directory.
+     * <p>
+     * Cancelling the returned future, or completing it any other way, stops the run at the next chunk of work, and
+     * everything it built up can be garbage collected.
+     * <p>
+     * {@code organizeAll}, {@code organizeIncremental} and {@code organizeStreaming} split their work up the same way,
+     * but they block and always run on the common fork/join pool.
+     * @param listener Also told how many classes have been read and checked, with {@link OrganizeListener#progress}
+     */
+    public static CompletableFuture<ClassOrganizeMap> organizeAsync(
+        ClassSource source, LibraryIndex libraries, ScanEngine engine, Executor executor, OrganizeListener listener
+    ) {
+        return runAsync(
+            executor, listener, (recorder, workers) -> organize(source, libraries, engine, recorder, workers)
+        );
+    }
+
+    private interface AsyncRun {
+        ClassOrganizeMap run(OrganizeRecorder recorder, Workers workers) throws IOException;
+    }
+
+    private static CompletableFuture<ClassOrganizeMap> runAsync(
+        Executor executor, OrganizeListener listener, AsyncRun run
+    ) {
+        final CompletableFuture<ClassOrganizeMap> result = new CompletableFuture<>();
+        // Once the future is done, nothing can see the result of the run anymore
+        final Workers workers = new Workers(executor, result::isDone);
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) return;
+                try {
+                    final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+                    result.complete(recorder.finish(run.run(recorder, workers)));
+                } catch (CancellationException e) {
+                    result.cancel(false);
+                } catch (IOException | RuntimeException | Error e) {
+                    result.completeExceptionally(e);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
 
-                void checkMember(MemberReference member) {
-                    if (checkClass(member.owner())) return;
-                    final int access = accessMap.get(member.owner()).get(member);
-                    if (isPackagePrivate(access)) {
-                        result.mergePackages(thisPackage, result.getPackage(member.owner()));
-                    } else if (Modifier.isProtected(access)) {
-                        String checkClazz = entry.getValue().getSuperName();
-                        while (checkClazz != null) {
-                            if (checkClazz.equals(member.owner())) return;
-                            final ClassReader reader = readers.get(checkClazz);
-                            if (reader == null) return;
-                            checkClazz = reader.getSuperName();
-                        }
-                        // The member is protected and not inherited. Merge.
-                        result.mergePackages(thisPackage, result.getPackage(member.owner()));
+    /**
+     * Organizes many directories or archives, such as every version of a jar. See
+     * {@link #organizeAll(List, ScanEngine, OrganizeListener)}.
+     */
+    public static List<ClassOrganizeMap> organizeAll(List<Path> roots) throws IOException {
+        return organizeAll(roots, ScanEngine.ASM, OrganizeListener.NONE);
+    }
+
+    /**
+     * Organizes many directories or archives one after another, each into its own map. Class files are told apart by
+     * the hash of their content, and each distinct class file is only summarized once across all the roots, so
+     * classes that are the same in many versions of a jar are only parsed the first time they are seen. Every class is
+     * still read, since {@linkplain ClassSource#stamp stamps} can't tell apart classes in different roots. The
+     * summaries are kept until every root has been organized.
+     * @param listener Notified of each root's run separately
+     * @return The map of each root, in the same order
+     */
+    public static List<ClassOrganizeMap> organizeAll(
+        List<Path> roots, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final SummaryPool summaries = new SummaryPool(engine);
+        final List<ClassOrganizeMap> result = new ArrayList<>(roots.size());
+        for (final Path root : roots) {
+            final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+            recorder.start(OrganizePhase.OPEN);
+            try (ClassSource source = ClassSource.open(root)) {
+                recorder.end();
+                final String[] classNames = source.classNames().toArray(new String[0]);
+                recorder.classCount(classNames.length);
+                recorder.start(OrganizePhase.READ);
+                final ClassSummary[] classSummaries = readSummaries(
+                    source, 0, classNames.length, summaries::summarize, recorder, Workers.COMMON
+                );
+                recorder.end();
+                result.add(recorder.finish(
+                    organize(classNames, classSummaries, LibraryIndex.EMPTY, recorder, Workers.COMMON)
+                ));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Organizes a directory of class files or a jar/zip archive, reusing the results of the previous run for classes
+     * that haven't changed.
+     * @param cacheFile Where class summaries are kept between runs. It is created if it doesn't exist.
+     */
+    public static ClassOrganizeMap organizeIncremental(Path root, Path cacheFile) throws IOException {
+        return organizeIncremental(root, cacheFile, OrganizeListener.NONE);
+    }
+
+    public static ClassOrganizeMap organizeIncremental(
+        Path root, Path cacheFile, OrganizeListener listener
+    ) throws IOException {
+        return organizeIncremental(root, cacheFile, ScanEngine.ASM, listener);
+    }
+
+    public static ClassOrganizeMap organizeIncremental(
+        Path root, Path cacheFile, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        return organizeIncremental(root, cacheFile, LibraryIndex.EMPTY, engine, listener);
+    }
+
+    public static ClassOrganizeMap organizeIncremental(
+        Path root, Path cacheFile, LibraryIndex libraries, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        recorder.start(OrganizePhase.OPEN);
+        try (ClassSource source = ClassSource.open(root)) {
+            recorder.end();
+            return recorder.finish(
+                organizeIncremental(source, cacheFile, libraries, engine, recorder, Workers.COMMON)
+            );
+        }
+    }
+
+    /**
+     * Organizes classes, reusing the results of the previous run for classes that haven't changed. A class is only
+     * read if its {@linkplain ClassSource#stamp stamp} changed, and only summarized again if its content did.
+     * @param cacheFile Where class summaries are kept between runs. It is created if it doesn't exist.
+     */
+    public static ClassOrganizeMap organizeIncremental(ClassSource source, Path cacheFile) throws IOException {
+        return organizeIncremental(source, cacheFile, OrganizeListener.NONE);
+    }
+
+    public static ClassOrganizeMap organizeIncremental(
+        ClassSource source, Path cacheFile, OrganizeListener listener
+    ) throws IOException {
+        return organizeIncremental(source, cacheFile, ScanEngine.ASM, listener);
+    }
+
+    public static ClassOrganizeMap organizeIncremental(
+        ClassSource source, Path cacheFile, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        return organizeIncremental(source, cacheFile, LibraryIndex.EMPTY, engine, listener);
+    }
+
+    /**
+     * Organizes classes that depend on {@code libraries}, reusing the results of the previous run for classes that
+     * haven't changed. Library summaries aren't kept in {@code cacheFile}, since {@link LibraryIndex} caches them.
+     */
+    public static ClassOrganizeMap organizeIncremental(
+        ClassSource source, Path cacheFile, LibraryIndex libraries, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        return recorder.finish(organizeIncremental(source, cacheFile, libraries, engine, recorder, Workers.COMMON));
+    }
+
+    private static ClassOrganizeMap organizeIncremental(
+        ClassSource source,
+        Path cacheFile,
+        LibraryIndex libraries,
+        ScanEngine engine,
+        OrganizeRecorder recorder,
+        Workers workers
+    ) throws IOException {
+        final String[] classNames = source.classNames().toArray(new String[0]);
+        recorder.classCount(classNames.length);
+        recorder.start(OrganizePhase.LOAD_CACHE);
+        final SummaryCache cache = SummaryCache.load(cacheFile);
+        recorder.end();
+        recorder.start(OrganizePhase.READ);
+        final SummaryCache.Entry[] entries = new SummaryCache.Entry[classNames.length];
+        try {
+            // Most classes are usually unchanged and never read, so this reads synchronously instead of pipelining
+            workers.forEach(classNames.length, READ_CHUNK, (start, end) -> {
+                try {
+                    for (int index = start; index < end; index++) {
+                        entries[index] = readEntry(source, index, cache.get(classNames[index]), engine, recorder);
                     }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+                recorder.progress(end - start);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        recorder.end();
 
-                /**
-                 * @return {@code true} if already merged
-                 */
-                boolean checkClass(String otherClass) {
-                    if (otherClass.equals(className)) {
-                        return true;
-                    }
-                    final Integer otherPackage = result.getPackage(otherClass);
-                    if (otherPackage == null || thisPackage.equals(otherPackage)) {
-                        return true;
-                    }
-                    final int otherAccess = readers.get(otherClass).getAccess();
-                    if (!isPackagePrivate(otherAccess)) {
-                        return false;
+        boolean changed = cache.size() != classNames.length;
+        final ClassSummary[] summaries = new ClassSummary[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            summaries[i] = entries[i].summary();
+            changed |= entries[i] != cache.get(classNames[i]);
+        }
+        if (changed) {
+            recorder.start(OrganizePhase.SAVE_CACHE);
+            SummaryCache.save(cacheFile, classNames, entries);
+            recorder.end();
+        }
+        return organize(classNames, summaries, libraries, recorder, workers);
+    }
+
+    /**
+     * @return {@code cached} if the class's stamp or content still matches it, or else a new entry for the class
+     */
+    private static SummaryCache.Entry readEntry(
+        ClassSource source, int index, SummaryCache.Entry cached, ScanEngine engine, OrganizeRecorder recorder
+    ) throws IOException {
+        final long stamp = source.stamp(index);
+        if (cached != null && stamp != 0 && cached.stamp() == stamp) {
+            return cached;
+        }
+        final byte[] classFile = source.read(index);
+        recorder.classRead(classFile.length);
+        final byte[] hash = SummaryCache.hash(classFile);
+        if (cached != null && cached.matches(hash)) {
+            return new SummaryCache.Entry(stamp, hash, cached.summary());
+        }
+        return new SummaryCache.Entry(stamp, hash, engine.summarize(classFile));
+    }
+
+    /**
+     * Organizes a directory of class files or a jar/zip archive in bounded memory. See
+     * {@link #organizeStreaming(ClassSource, StreamingOptions, ScanEngine, OrganizeListener)}.
+     */
+    public static ClassOrganizeMap organizeStreaming(Path root, StreamingOptions options) throws IOException {
+        return organizeStreaming(root, options, OrganizeListener.NONE);
+    }
+
+    public static ClassOrganizeMap organizeStreaming(
+        Path root, StreamingOptions options, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        recorder.start(OrganizePhase.OPEN);
+        try (ClassSource source = ClassSource.open(root)) {
+            recorder.end();
+            return recorder.finish(organizeStreaming(source, options, ScanEngine.ASM, recorder, Workers.COMMON));
+        }
+    }
+
+    public static ClassOrganizeMap organizeStreaming(ClassSource source, StreamingOptions options) throws IOException {
+        return organizeStreaming(source, options, ScanEngine.ASM, OrganizeListener.NONE);
+    }
+
+    /**
+     * Organizes classes in bounded memory, for inputs too large to summarize all at once.
+     * <p>
+     * Classes are read twice, {@link StreamingOptions#batchSize} at a time. The first pass keeps only what each class
+     * declares. The second finds edges, keeping up to {@link StreamingOptions#edgeBudget} bytes of them in memory and
+     * spilling the rest to a temporary file, which is merged from once every class has been read. Memory use then
+     * grows with the number of classes and members rather than with the size of their code.
+     */
+    public static ClassOrganizeMap organizeStreaming(
+        ClassSource source, StreamingOptions options, ScanEngine engine, OrganizeListener listener
+    ) throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        return recorder.finish(organizeStreaming(source, options, engine, recorder, Workers.COMMON));
+    }
+
+    private static ClassOrganizeMap organizeStreaming(
+        ClassSource source, StreamingOptions options, ScanEngine engine, OrganizeRecorder recorder, Workers workers
+    ) throws IOException {
+        final String[] classNames = source.classNames().toArray(new String[0]);
+        final int batchSize = options.batchSize();
+        recorder.classCount(classNames.length);
+        recorder.start(OrganizePhase.READ);
+        final ClassSummary[] declarations = new ClassSummary[classNames.length];
+        for (int start = 0; start < classNames.length; start += batchSize) {
+            final int end = Math.min(start + batchSize, classNames.length);
+            final ClassSummary[] batch = readSummaries(source, start, end, engine::summarize, recorder, workers);
+            for (int i = 0; i < batch.length; i++) {
+                declarations[start + i] = batch[i].declarations();
+            }
+        }
+        recorder.end();
+
+        recorder.start(OrganizePhase.INDEX);
+        final Index index = Index.create(classNames, declarations, LibraryIndex.EMPTY, workers);
+        recorder.end();
+
+        try (EdgeSpill edges = new EdgeSpill(options.edgeBudget(), options.spillDirectory())) {
+            recorder.start(OrganizePhase.FIND_EDGES);
+            for (int start = 0; start < classNames.length; start += batchSize) {
+                final int end = Math.min(start + batchSize, classNames.length);
+                final ClassSummary[] batch = readSummaries(source, start, end, engine::summarize, recorder, workers);
+                final int batchStart = start;
+                final int[][] batchEdges = new int[batch.length][];
+                workers.forEach(batch.length, EDGE_CHUNK, (chunkStart, chunkEnd) -> {
+                    for (int i = chunkStart; i < chunkEnd; i++) {
+                        batchEdges[i] = findEdges(batchStart + i, batch[i], index);
                     }
-                    result.mergePackages(thisPackage, otherPackage);
-                    return false;
+                });
+                for (int i = 0; i < batchEdges.length; i++) {
+                    edges.add(start + i, batchEdges[i]);
                 }
             }
-            final Checkers ch = new Checkers();
-
-            entry.getValue().accept(new ClassVisitor(Opcodes.ASM9) {
-                @Override
-                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-                    ch.checkSignature(signature, false);
-                    if (superName != null) {
-                        ch.checkClass(superName);
-                    }
-                    if (interfaces != null) {
-                        for (final String intf : interfaces) {
-                            ch.checkClass(intf);
-                        }
+            recorder.spilledBytes(edges.spilledBytes());
+            recorder.end();
+
+            recorder.start(OrganizePhase.MERGE);
+            final ConcurrentUnionFind packages = new ConcurrentUnionFind(classNames.length);
+            final long[] edgeCounts = new long[MERGE_CAUSES.length];
+            final long[] mergeCounts = new long[MERGE_CAUSES.length];
+            edges.forEach((id, edge) -> {
+                if (packages.union(id, edge >>> CAUSE_BITS)) {
+                    mergeCounts[edge & CAUSE_MASK]++;
+                }
+                edgeCounts[edge & CAUSE_MASK]++;
+            });
+            recordEdges(edgeCounts, mergeCounts, recorder);
+            recorder.end();
+            return buildMap(classNames, packages, recorder);
+        }
+    }
+
+    static ClassOrganizeMap organize(String[] classNames, ClassSummary[] summaries) {
+        return organize(
+            classNames, summaries, LibraryIndex.EMPTY, new OrganizeRecorder(OrganizeListener.NONE), Workers.COMMON
+        );
+    }
+
+    private static ClassOrganizeMap organize(
+        String[] classNames,
+        ClassSummary[] summaries,
+        LibraryIndex libraries,
+        OrganizeRecorder recorder,
+        Workers workers
+    ) {
+        recorder.classCount(classNames.length);
+        recorder.start(OrganizePhase.INDEX);
+        final Index index = Index.create(classNames, summaries, libraries, workers);
+        recorder.end();
+
+        // Finding edges only reads shared state, so it can run in parallel. The merges it finds are applied
+        // afterward to a concurrent union-find whose result doesn't depend on the order merges are made in.
+        recorder.start(OrganizePhase.FIND_EDGES);
+        final int[][] edges = new int[classNames.length][];
+        workers.forEach(classNames.length, EDGE_CHUNK, (start, end) -> {
+            for (int id = start; id < end; id++) {
+                edges[id] = findEdges(id, summaries[id], index);
+            }
+            recorder.progress(end - start);
+        });
+        recorder.end();
+
+        return merge(classNames, edges, recorder, workers);
+    }
+
+    /**
+     * Merges the packages of every class with the classes its edges lead to, and builds the map.
+     * @param edges The edges of each class, as found by {@link #findEdges}
+     */
+    static ClassOrganizeMap merge(String[] classNames, int[][] edges, OrganizeRecorder recorder, Workers workers) {
+        recorder.start(OrganizePhase.MERGE);
+        final ConcurrentUnionFind packages = new ConcurrentUnionFind(classNames.length);
+        final AtomicLongArray mergeCounts = new AtomicLongArray(MERGE_CAUSES.length);
+        workers.forEach(classNames.length, MERGE_CHUNK, (start, end) -> {
+            final long[] chunkMerges = new long[MERGE_CAUSES.length];
+            for (int id = start; id < end; id++) {
+                for (final int edge : edges[id]) {
+                    if (packages.union(id, edge >>> CAUSE_BITS)) {
+                        chunkMerges[edge & CAUSE_MASK]++;
                     }
                 }
+            }
+            for (int cause = 0; cause < chunkMerges.length; cause++) {
+                mergeCounts.addAndGet(cause, chunkMerges[cause]);
+            }
+        });
+        final long[] edgeCounts = new long[MERGE_CAUSES.length];
+        for (final int[] classEdges : edges) {
+            for (final int edge : classEdges) {
+                edgeCounts[edge & CAUSE_MASK]++;
+            }
+        }
+        final long[] merges = new long[MERGE_CAUSES.length];
+        Arrays.setAll(merges, mergeCounts::get);
+        recordEdges(edgeCounts, merges, recorder);
+        recorder.end();
+        return buildMap(classNames, packages, recorder);
+    }
+
+    private static void recordEdges(long[] edgeCounts, long[] mergeCounts, OrganizeRecorder recorder) {
+        for (final MergeCause cause : MERGE_CAUSES) {
+            recorder.edges(cause, edgeCounts[cause.ordinal()], mergeCounts[cause.ordinal()]);
+        }
+    }
+
+    private static ClassOrganizeMap buildMap(
+        String[] classNames, ConcurrentUnionFind packages, OrganizeRecorder recorder
+    ) {
+        // Every root is the smallest id in its set, so numbering roots in id order gives a compact map
+        recorder.start(OrganizePhase.BUILD_MAP);
+        final ClassOrganizeMap result = new ClassOrganizeMap(classNames.length);
+        final int[] packageIds = new int[classNames.length];
+        final int[] packageSizes = new int[classNames.length];
+        int packageCount = 0;
+        int largestPackageSize = 0;
+        for (int id = 0; id < classNames.length; id++) {
+            final int setRoot = packages.find(id);
+            if (setRoot == id) {
+                packageIds[id] = packageCount++;
+            }
+            final int pkg = packageIds[setRoot];
+            largestPackageSize = Math.max(largestPackageSize, ++packageSizes[pkg]);
+            result.addClass(classNames[id], pkg);
+        }
+        recorder.largestPackageSize(largestPackageSize);
+        recorder.end();
+        return result;
+    }
 
-                @Override
-                public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-                    return ch.checkAnnotation(descriptor);
+    /**
+     * What every class declares, indexed for looking up references to it. Classes being organized come first, then
+     * the library classes they name that aren't also being organized, and the supertypes of those.
+     * {@link ClassWatcher} patches its index in place as classes change, so there its ids aren't in that order.
+     * @param libraryClasses The ids of library classes. They are never moved, so nothing merges with them.
+     * @param declarations The summary of each class by id. Only their {@linkplain ClassSummary#declarations
+     *                     declarations} are used.
+     * @param memberAccess The access flags of every declared member by {@code (class id, name symbol, descriptor
+     *                     symbol)}
+     * @param mergeCandidates The classes that a reference can cause a merge through. Those are the classes being
+     *                        organized that are package-private or declare package-private or protected members, and
+     *                        every class that inherits from one. References to any other class never cause a merge.
+     */
+    record Index(
+        BitSet libraryClasses,
+        StringIntMap classIds,
+        ClassSummary[] declarations,
+        SymbolTable memberSymbols,
+        IntTripleMap memberAccess,
+        ClassHierarchy hierarchy,
+        BitSet mergeCandidates
+    ) {
+        /**
+         * @param declarations The summary of each class being organized. If there are libraries, these must be whole
+         *                     summaries, since only the library classes they name are indexed.
+         */
+        static Index create(
+            String[] classNames, ClassSummary[] declarations, LibraryIndex libraries, Workers workers
+        ) {
+            final StringIntMap classIds = new StringIntMap(classNames.length);
+            for (int i = 0; i < classNames.length; i++) {
+                classIds.put(classNames[i], i);
+            }
+            ClassSummary[] allDeclarations = declarations;
+            if (!libraries.isEmpty()) {
+                allDeclarations = addLibraryClasses(declarations, libraries, classIds);
+            }
+            final SymbolTable memberSymbols = new SymbolTable(allDeclarations.length * 4);
+            final ClassHierarchy hierarchy = new ClassHierarchy(classIds, allDeclarations, workers);
+            final BitSet libraryClasses = new BitSet(allDeclarations.length);
+            libraryClasses.set(classNames.length, allDeclarations.length);
+            return new Index(
+                libraryClasses,
+                classIds,
+                allDeclarations,
+                memberSymbols,
+                createAccessIndex(allDeclarations, memberSymbols),
+                hierarchy,
+                hierarchy.withSubtypes(findMergeTargets(declarations))
+            );
+        }
+
+        /**
+         * Gives ids to the library classes that {@code declarations} name, and to their supertypes. References to any
+         * other library class can't be resolved through anything, so they aren't looked up.
+         * @return {@code declarations}, followed by the declarations of those library classes
+         */
+        private static ClassSummary[] addLibraryClasses(
+            ClassSummary[] declarations, LibraryIndex libraries, StringIntMap classIds
+        ) {
+            final List<ClassSummary> result = new ArrayList<>(Arrays.asList(declarations));
+            final ArrayDeque<String> supertypes = new ArrayDeque<>();
+            for (final ClassSummary declaration : declarations) {
+                for (final String string : declaration.strings) {
+                    addLibraryClass(string, libraries, classIds, result, supertypes);
                 }
+                addSupertypes(declaration, supertypes);
+            }
+            String supertype;
+            while ((supertype = supertypes.poll()) != null) {
+                addLibraryClass(supertype, libraries, classIds, result, supertypes);
+            }
+            return result.toArray(new ClassSummary[0]);
+        }
 
-                @Override
-                public void visitInnerClass(String name, String outerName, String innerName, int access) {
-                    ch.checkClass(name);
-                    if (outerName != null) {
-                        ch.checkClass(outerName);
-                    }
+        private static void addLibraryClass(
+            String name,
+            LibraryIndex libraries,
+            StringIntMap classIds,
+            List<ClassSummary> declarations,
+            ArrayDeque<String> supertypes
+        ) {
+            if (classIds.get(name) >= 0) return;
+            final ClassSummary declaration = libraries.find(name);
+            if (declaration == null) return;
+            classIds.put(name, declarations.size());
+            declarations.add(declaration);
+            addSupertypes(declaration, supertypes);
+        }
+
+        private static void addSupertypes(ClassSummary declaration, ArrayDeque<String> supertypes) {
+            if (declaration.superName != null) {
+                supertypes.add(declaration.superName);
+            }
+            Collections.addAll(supertypes, declaration.interfaces);
+        }
+
+        /**
+         * @return The classes that are package-private or declare package-private or protected members
+         */
+        private static BitSet findMergeTargets(ClassSummary[] declarations) {
+            final BitSet result = new BitSet(declarations.length);
+            for (int id = 0; id < declarations.length; id++) {
+                if (isMergeTarget(declarations[id])) {
+                    result.set(id);
                 }
+            }
+            return result;
+        }
 
-                @Override
-                public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                    return ch.checkAnnotation(descriptor);
+        /**
+         * @return Whether the class is package-private or declares package-private or protected members
+         */
+        static boolean isMergeTarget(ClassSummary declaration) {
+            if (isPackagePrivate(declaration.access)) {
+                return true;
+            }
+            for (final int access : declaration.memberAccess) {
+                if (isPackagePrivate(access) || Modifier.isProtected(access)) {
+                    return true;
                 }
+            }
+            return false;
+        }
+    }
 
-                @Override
-                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
-                    ch.checkType(Type.getType(descriptor));
-                    ch.checkSignature(signature, true);
-                    if (value != null) {
-                        ch.checkObject(value);
-                    }
-                    return new FieldVisitor(api) {
-                        @Override
-                        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-                    };
+    /**
+     * Finds the classes that must be in the same package as the given class.
+     * @return The edges to those classes, sorted and without duplicates. Each is the other class's id shifted left
+     * by {@link #CAUSE_BITS}, ored with the ordinal of the {@link MergeCause}.
+     */
+    static int[] findEdges(int classId, ClassSummary summary, Index index) {
+        final StringIntMap classIds = index.classIds();
+        final ClassSummary[] summaries = index.declarations();
+        final SymbolTable memberSymbols = index.memberSymbols();
+        final IntTripleMap memberAccess = index.memberAccess();
+        final ClassHierarchy hierarchy = index.hierarchy();
+        final BitSet libraryClasses = index.libraryClasses();
+        final BitSet mergeCandidates = index.mergeCandidates();
+        // Resolve the class's strings once, so that every reference after that is a primitive lookup
+        final String[] strings = summary.strings;
+        final int[] stringClassIds = new int[strings.length];
+        boolean anyCandidates = false;
+        for (int i = 0; i < strings.length; i++) {
+            final int id = classIds.get(strings[i]);
+            stringClassIds[i] = id;
+            anyCandidates |= id >= 0 && id != classId && mergeCandidates.get(id);
+        }
+        // Most classes only refer to public classes with public members, and have nothing to check
+        if (!anyCandidates) {
+            return NO_EDGES;
+        }
+        final int[] stringSymbols = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            stringSymbols[i] = memberSymbols.get(strings[i]);
+        }
+
+        class Checkers {
+            // No checkers bot for you, sorry
+            static final byte UNDECIDED = 0;
+            static final byte CHECK_MEMBERS = 1;
+            static final byte IGNORE = 2;
+
+            final IntList edges = new IntList();
+            final byte[] classDecisions = new byte[strings.length];
+
+            void checkMember(int owner, int name, int descriptor) {
+                // Members used through this class itself, like this.foo(), may still be inherited, so only skip them if
+                // nothing it inherits from can cause a merge
+                if (stringClassIds[owner] == classId ? !mergeCandidates.get(classId) : checkClass(owner)) return;
+                final int nameSymbol = stringSymbols[name];
+                final int descriptorSymbol = stringSymbols[descriptor];
+                // The member may be inherited, so find the class that actually declares it
+                final int declaringId = hierarchy.resolveMember(
+                    stringClassIds[owner], nameSymbol, descriptorSymbol, memberAccess
+                );
+                // Library classes are never moved, so nothing has to follow them
+                if (declaringId < 0 || declaringId == classId || libraryClasses.get(declaringId)) return;
+                final int access = memberAccess.get(declaringId, nameSymbol, descriptorSymbol);
+                if (isPackagePrivate(access)) {
+                    addEdge(declaringId, MergeCause.PACKAGE_PRIVATE_MEMBER);
+                } else if (Modifier.isProtected(access)) {
+                    // An unknown superclass might extend the declaring class, so only merge if we know it doesn't
+                    if (hierarchy.isSubclass(classId, declaringId) || hierarchy.hasUnknownSuperclass(classId)) return;
+                    // The member is protected and not inherited. Merge.
+                    addEdge(declaringId, MergeCause.PROTECTED_MEMBER);
                 }
+            }
 
-                @Override
-                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                    ch.checkType(Type.getMethodType(descriptor));
-                    ch.checkSignature(signature, false);
-                    if (exceptions != null) {
-                        for (final String exc : exceptions) {
-                            ch.checkClass(exc);
-                        }
-                    }
-                    return new MethodVisitor(api) {
-                        @Override
-                        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
-                            ch.checkMember(new MemberReference(owner, name, Type.getType(descriptor)));
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
-                            ch.checkType(Type.getType(descriptor));
-                            ch.checkSignature(signature, true);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start, Label[] end, int[] index, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
-                            ch.checkType(Type.getMethodType(descriptor));
-                            ch.checkObject(bootstrapMethodHandle);
-                            for (final Object arg : bootstrapMethodArguments) {
-                                ch.checkObject(arg);
-                            }
-                        }
-
-                        @Override
-                        public void visitLdcInsn(Object value) {
-                            ch.checkObject(value);
-                        }
-
-                        @Override
-                        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-                            ch.checkMember(new MemberReference(owner, name, Type.getMethodType(descriptor)));
-                        }
-
-                        @Override
-                        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
-                            ch.checkType(Type.getType(descriptor));
-                        }
-
-                        @Override
-                        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
-                            if (type != null) {
-                                ch.checkClass(type);
-                            }
-                        }
-
-                        @Override
-                        public void visitTypeInsn(int opcode, String type) {
-                            ch.checkClass(type);
-                        }
-                    };
+            /**
+             * @return {@code true} if there is nothing more to check
+             */
+            boolean checkClass(int otherClass) {
+                // A class is usually referred to by many members, so its decision is only made once
+                final byte decision = classDecisions[otherClass];
+                if (decision != UNDECIDED) {
+                    return decision == IGNORE;
                 }
+                final boolean ignore = decideClass(stringClassIds[otherClass]);
+                classDecisions[otherClass] = ignore ? IGNORE : CHECK_MEMBERS;
+                return ignore;
+            }
 
-                @Override
-                public RecordComponentVisitor visitRecordComponent(String name, String descriptor, String signature) {
-                    ch.checkType(Type.getType(descriptor));
-                    ch.checkSignature(signature, false);
-                    return new RecordComponentVisitor(api) {
-                        @Override
-                        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-
-                        @Override
-                        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-                            return ch.checkAnnotation(descriptor);
-                        }
-                    };
+            private boolean decideClass(int otherId) {
+                if (otherId == classId || otherId < 0 || !mergeCandidates.get(otherId)) {
+                    return true;
                 }
-            }, ClassReader.SKIP_FRAMES);
+                if (libraryClasses.get(otherId)) {
+                    // Members of library classes may still be declared by a superclass that is being organized
+                    return false;
+                }
+                final int otherAccess = summaries[otherId].access;
+                if (!isPackagePrivate(otherAccess)) {
+                    return false;
+                }
+                addEdge(otherId, MergeCause.CLASS_ACCESS);
+                return false;
+            }
+
+            void addEdge(int otherId, MergeCause cause) {
+                edges.add(otherId << CAUSE_BITS | cause.ordinal());
+            }
+        }
+        final Checkers ch = new Checkers();
+
+        for (final int reference : summary.classReferences) {
+            ch.checkClass(reference);
         }
-        return result.compacted();
-    }
-
-    private static Map<String, Integer> createInitial(Path root) throws IOException {
-        final int[] counter = new int[1];
-        try (Stream<Path> stream = Files.find(root, Integer.MAX_VALUE, (p, a) -> a.isRegularFile() && p.toString().endsWith(".class"))) {
-            return stream.collect(Collectors.toMap(
-                path -> {
-                    final String result = root.relativize(path)
-                        .toString()
-                        .replace(path.getFileSystem().getSeparator(), "/");
-                    return result.substring(0, result.length() - 6);
-                },
-                p -> counter[0]++
-            ));
+        final int[] memberReferences = summary.memberReferences;
+        for (int i = 0; i < memberReferences.length; i += 3) {
+            ch.checkMember(memberReferences[i], memberReferences[i + 1], memberReferences[i + 2]);
         }
+        return ch.edges.toSortedSet();
     }
 
-    private static Map<String, ClassReader> openClasses(Path root, Collection<String> classes) throws IOException {
-        try {
-            return classes.parallelStream().collect(Collectors.toMap(
-                Function.identity(),
-                className -> {
-                    final Path path = root.resolve(
-                        className.replace("/", root.getFileSystem().getSeparator()).concat(".class")
-                    );
-                    try (InputStream is = Files.newInputStream(path)) {
-                        return new ClassReader(is);
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
+    /**
+     * Reads and summarizes every class in parallel. Class bytes only live until their class is summarized.
+     */
+    static ClassSummary[] readSummaries(
+        ClassSource source, ScanEngine engine, OrganizeRecorder recorder, Workers workers
+    ) throws IOException {
+        return readSummaries(source, 0, source.classNames().size(), engine::summarize, recorder, workers);
+    }
+
+    /**
+     * Reads and summarizes the classes from {@code start} (inclusive) to {@code end} (exclusive) in parallel.
+     * <p>
+     * Reads are started from this thread with {@link ClassSource#readAsync}, {@link #READ_CHUNK} classes at a time, and
+     * each chunk is summarized on the workers' executor as soon as it's read, so parsing overlaps with reading. Chunks
+     * keep the hand-offs between threads cheap next to the work. At most {@link #MAX_PENDING_CLASSES} classes are being
+     * read or waiting to be summarized at once, which bounds the class bytes held in memory.
+     */
+    private static ClassSummary[] readSummaries(
+        ClassSource source,
+        int start,
+        int end,
+        Function<byte[], ClassSummary> summarizer,
+        OrganizeRecorder recorder,
+        Workers workers
+    ) throws IOException {
+        final ClassSummary[] result = new ClassSummary[end - start];
+        final Workers.Pipeline pipeline = workers.pipeline(MAX_PENDING_CLASSES / READ_CHUNK);
+        // Stop starting reads once one has failed, since the whole batch fails anyway
+        for (int chunkStart = 0; chunkStart < result.length && !pipeline.failed(); chunkStart += READ_CHUNK) {
+            final int from = chunkStart;
+            final int to = Math.min(chunkStart + READ_CHUNK, result.length);
+            pipeline.submit(executor -> source.readAsync(start + from, start + to, executor), classFiles -> {
+                for (int i = 0; i < classFiles.length; i++) {
+                    recorder.classRead(classFiles[i].length);
+                    result[from + i] = summarizer.apply(classFiles[i]);
+                    classFiles[i] = null;
                 }
-            ));
-        } catch (UncheckedIOException e) {
-            throw e.getCause();
+                recorder.progress(classFiles.length);
+            });
         }
+        pipeline.finish();
+        return result;
     }
 
-    private static Map<String, Map<MemberReference, Integer>> createAccessMap(Map<String, ClassReader> classes) {
-        return classes.entrySet().parallelStream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            entry -> {
-                final Map<MemberReference, Integer> result = new HashMap<>();
-                entry.getValue().accept(new ClassVisitor(Opcodes.ASM9) {
-                    @Override
-                    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
-                        result.put(new MemberReference(entry.getKey(), name, Type.getType(descriptor)), access);
-                        return null;
-                    }
+    /**
+     * Indexes the access flags of every declared member by {@code (class id, name symbol, descriptor symbol)}.
+     */
+    private static IntTripleMap createAccessIndex(ClassSummary[] summaries, SymbolTable memberSymbols) {
+        int memberCount = 0;
+        for (final ClassSummary summary : summaries) {
+            memberCount += summary.memberCount();
+        }
+        final IntTripleMap result = new IntTripleMap(memberCount);
+        for (int id = 0; id < summaries.length; id++) {
+            indexMembers(id, summaries[id], false, memberSymbols, result);
+        }
+        return result;
+    }
 
-                    @Override
-                    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                        result.put(new MemberReference(entry.getKey(), name, Type.getMethodType(descriptor)), access);
-                        return null;
-                    }
-                }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
-                return result;
-            }
-        ));
+    /**
+     * Adds the members {@code summary} declares to {@code memberAccess} under {@code id}, or takes them out again if
+     * {@code remove} is set. The map can't remove keys, so members that are taken out are set to {@code -1}, which
+     * reads as missing.
+     */
+    static void indexMembers(
+        int id, ClassSummary summary, boolean remove, SymbolTable memberSymbols, IntTripleMap memberAccess
+    ) {
+        for (int i = 0; i < summary.memberCount(); i++) {
+            memberAccess.put(
+                id,
+                memberSymbols.intern(summary.memberName(i)),
+                memberSymbols.intern(summary.memberDescriptor(i)),
+                remove ? -1 : summary.memberAccess[i]
+            );
+        }
     }
 
     private static boolean isPackagePrivate(int access) {
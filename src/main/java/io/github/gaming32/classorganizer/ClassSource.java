@@ -0,0 +1,99 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A set of class files to organize.
+ */
+public interface ClassSource extends Closeable {
+    /**
+     * How many class files a directory source reads at once by default.
+     */
+    int DEFAULT_CONCURRENT_READS = 16;
+
+    /**
+     * Opens a directory of class files or a jar/zip archive, depending on what {@code path} is.
+     */
+    static ClassSource open(Path path) throws IOException {
+        return Files.isDirectory(path) ? directory(path) : archive(path);
+    }
+
+    static ClassSource directory(Path root) throws IOException {
+        return directory(root, DEFAULT_CONCURRENT_READS);
+    }
+
+    /**
+     * Opens a directory of class files. {@link #readAsync} reads on a dedicated I/O pool with pooled direct buffers,
+     * so a slow or network-backed disk doesn't tie up the threads that parse classes.
+     * @param maxConcurrentReads How many files are read at once
+     */
+    static ClassSource directory(Path root, int maxConcurrentReads) throws IOException {
+        return new DirectoryClassSource(root, maxConcurrentReads);
+    }
+
+    /**
+     * Opens a jar or zip archive. The archive is memory-mapped and its central directory is read once, so entries
+     * can be read concurrently without going through a zip {@link java.nio.file.FileSystem}.
+     */
+    static ClassSource archive(Path archive) throws IOException {
+        return new ArchiveClassSource(archive);
+    }
+
+    /**
+     * @return The internal names of the classes in this source. Indices into this list are used by {@link #read}.
+     */
+    List<String> classNames();
+
+    /**
+     * Reads the bytes of a class file. This may be called from multiple threads at once.
+     * @param index The index of the class in {@link #classNames()}
+     */
+    byte[] read(int index) throws IOException;
+
+    /**
+     * Starts reading the bytes of a run of class files. This is called from one thread, which the source may block to
+     * limit how many reads are in flight. By default this calls {@link #read} for each class in one task on
+     * {@code executor}, which suits sources whose reads are mostly CPU work, like inflating archive entries.
+     * @param start The index of the first class in {@link #classNames()}
+     * @param end The index after the last class
+     * @param executor Where the organize run does its work. Reads should run on it unless the source has threads of
+     *                 its own for them, so that they use the executor given to {@link ClassOrganizer#organizeAsync}
+     *                 and stop when that run is cancelled.
+     * @return A future of the bytes of each class, which fails with an {@link UncheckedIOException} if one can't be
+     * read
+     */
+    default CompletableFuture<byte[][]> readAsync(int start, int end, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            final byte[][] result = new byte[end - start][];
+            try {
+                for (int i = start; i < end; i++) {
+                    result[i - start] = read(i);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }, executor);
+    }
+
+    /**
+     * Gets a cheap value that changes whenever a class file changes, such as its size and modification time. This is
+     * used to skip re-reading unchanged classes when organizing incrementally.
+     * @param index The index of the class in {@link #classNames()}
+     * @return The stamp, or {@code 0} if it can't be determined without reading the class
+     */
+    default long stamp(int index) throws IOException {
+        return 0;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,241 @@
+package io.github.gaming32.classorganizer;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Everything organizing needs to know about a class file. This is extracted in a single pass, so the class bytes can
+ * be dropped as soon as it's made.
+ * <p>
+ * Like a constant pool, every name and descriptor the class uses is stored once in {@link #strings}, and everything
+ * else refers to it by index.
+ */
+final class ClassSummary {
+    private static final int[] EMPTY = new int[0];
+
+    final String[] strings;
+    final int access;
+    final String superName;
+    final String[] interfaces;
+    /**
+     * Declared fields and methods, as {@code name, descriptor} pairs
+     */
+    final int[] members;
+    final int[] memberAccess;
+    /**
+     * Classes referenced by name, without duplicates
+     */
+    final int[] classReferences;
+    /**
+     * Referenced fields and methods, as {@code owner, name, descriptor} triples without duplicates
+     */
+    final int[] memberReferences;
+
+    ClassSummary(
+        String[] strings,
+        int access,
+        String superName,
+        String[] interfaces,
+        int[] members,
+        int[] memberAccess,
+        int[] classReferences,
+        int[] memberReferences
+    ) {
+        this.strings = strings;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.members = members;
+        this.memberAccess = memberAccess;
+        this.classReferences = classReferences;
+        this.memberReferences = memberReferences;
+    }
+
+    static ClassSummary read(byte[] classFile) {
+        final SummaryVisitor visitor = new SummaryVisitor();
+        new ClassReader(classFile).accept(visitor, ClassReader.SKIP_FRAMES);
+        return visitor.toSummary();
+    }
+
+    /**
+     * @return A copy of this summary with only what other classes need to know about it: its access, supertypes and
+     * declared members. This is much smaller, since most of a class's strings are the names it refers to.
+     */
+    ClassSummary declarations() {
+        final SymbolTable memberStrings = new SymbolTable(members.length);
+        final int[] newMembers = new int[members.length];
+        for (int i = 0; i < members.length; i++) {
+            newMembers[i] = memberStrings.intern(strings[members[i]]);
+        }
+        return new ClassSummary(
+            memberStrings.toArray(), access, superName, interfaces, newMembers, memberAccess, EMPTY, EMPTY
+        );
+    }
+
+    /**
+     * @return Whether {@code other} declares the same access, supertypes and members as this, in the same order. If it
+     * does, nothing another class knows about this one changed.
+     */
+    boolean sameDeclarations(ClassSummary other) {
+        if (access != other.access || !Objects.equals(superName, other.superName) ||
+            !Arrays.equals(interfaces, other.interfaces) || !Arrays.equals(memberAccess, other.memberAccess)) {
+            return false;
+        }
+        for (int i = 0; i < memberCount(); i++) {
+            if (!memberName(i).equals(other.memberName(i)) || !memberDescriptor(i).equals(other.memberDescriptor(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds every string this summary uses to {@code table}. This must be called before {@link #writeTo}.
+     */
+    void internStrings(SymbolTable table) {
+        for (final String string : strings) {
+            table.intern(string);
+        }
+        if (superName != null) {
+            table.intern(superName);
+        }
+        for (final String intf : interfaces) {
+            table.intern(intf);
+        }
+    }
+
+    /**
+     * Writes this summary with its strings replaced by their ids in {@code table}.
+     */
+    void writeTo(DataOutput out, SymbolTable table) throws IOException {
+        writeVarInt(out, strings.length);
+        for (final String string : strings) {
+            writeVarInt(out, table.get(string));
+        }
+        writeVarInt(out, access);
+        writeVarInt(out, superName != null ? table.get(superName) + 1 : 0);
+        writeVarInt(out, interfaces.length);
+        for (final String intf : interfaces) {
+            writeVarInt(out, table.get(intf));
+        }
+        writeInts(out, members);
+        writeInts(out, memberAccess);
+        writeInts(out, classReferences);
+        writeInts(out, memberReferences);
+    }
+
+    /**
+     * Resolves the string ids a summary was written with.
+     */
+    interface StringTable {
+        String get(int id) throws IOException;
+    }
+
+    static ClassSummary readFrom(DataInput in, String[] table) throws IOException {
+        return readFrom(in, id -> lookup(table, id));
+    }
+
+    /**
+     * @return The string with id {@code id} in a table read from a cache
+     * @throws CorruptCacheException If there is no such string
+     */
+    static String lookup(String[] table, int id) throws CorruptCacheException {
+        if (id < 0 || id >= table.length) {
+            throw new CorruptCacheException("Invalid string id " + id);
+        }
+        return table[id];
+    }
+
+    static ClassSummary readFrom(DataInput in, StringTable table) throws IOException {
+        final String[] strings = new String[readLength(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = table.get(readVarInt(in));
+        }
+        final int access = readVarInt(in);
+        final int superName = readVarInt(in);
+        final String[] interfaces = new String[readLength(in)];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = table.get(readVarInt(in));
+        }
+        return new ClassSummary(
+            strings,
+            access,
+            superName != 0 ? table.get(superName - 1) : null,
+            interfaces,
+            readInts(in),
+            readInts(in),
+            readInts(in),
+            readInts(in)
+        );
+    }
+
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        writeVarInt(out, values.length);
+        for (final int value : values) {
+            writeVarInt(out, value);
+        }
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        final int[] result = new int[readLength(in)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = readVarInt(in);
+        }
+        return result;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CorruptCacheException("Malformed varint");
+    }
+
+    /**
+     * Reads the length of an array. Every element takes at least a byte, so a length past the end of the data means
+     * it's corrupt, and is caught here before a huge array is allocated. This relies on
+     * {@link DataInputStream#available} counting every remaining byte, as it does for files and buffers.
+     */
+    static int readLength(DataInput in) throws IOException {
+        final int length = readVarInt(in);
+        if (length < 0 || in instanceof DataInputStream stream && length > stream.available()) {
+            throw new CorruptCacheException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    int memberCount() {
+        return memberAccess.length;
+    }
+
+    String memberName(int member) {
+        return strings[members[member * 2]];
+    }
+
+    String memberDescriptor(int member) {
+        return strings[members[member * 2 + 1]];
+    }
+
+    int memberReferenceCount() {
+        return memberReferences.length / 3;
+    }
+}
@@ -0,0 +1,714 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the organization of a directory of class files up to date as its classes change, such as the output directory
+ * of a build that recompiles on save.
+ * <p>
+ * Every class is summarized once up front, and everything organizing them builds is kept between updates: the
+ * summary and edges of every class, the index of what they declare, and the union-find their packages come from.
+ * Changes are picked up with a {@link WatchService} and debounced, so a compiler writing many classes at once causes
+ * one update. Each update only does work for what the changed classes can affect:
+ * <ul>
+ *     <li>Only the classes that changed are read again.</li>
+ *     <li>The index and class hierarchy are patched for the classes whose declarations changed, and only the classes
+ *     under those in the hierarchy are looked at again.</li>
+ *     <li>Edges are found again for the changed classes, and for the classes that refer to a class whose declarations
+ *     changed or to one of its subtypes, since members are resolved through supertypes.</li>
+ *     <li>New edges are added to the union-find. If a class lost an edge, the package it was in is split up and joined
+ *     again from the edges its classes still have. Other packages are left alone.</li>
+ *     <li>The new map is the previous one with only the classes that moved merged in.</li>
+ * </ul>
+ * A package is numbered after the first of its classes to be seen, so it keeps its id from one update to the next
+ * unless it is split up or joined with an older package. The ids aren't compact.
+ * <p>
+ * Each update is published as a {@link FrozenClassOrganizeMap}, so the map can be read from any thread while the next
+ * update is made.
+ */
+public final class ClassWatcher implements Closeable {
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(100);
+
+    private static final class Entry {
+        final String className;
+        long stamp;
+        /**
+         * The summary of the class, or {@code null} if it isn't being organized. Ids are never reused for other
+         * classes, so that is a class that was deleted, or a library class.
+         */
+        ClassSummary summary;
+        /**
+         * As found by {@link ClassOrganizer#findEdges}, or {@code null} if the class isn't being organized
+         */
+        int[] edges;
+
+        Entry(String className) {
+            this.className = className;
+        }
+    }
+
+    /**
+     * What reading a changed class found.
+     * @param summary The new summary, or {@code null} if the class was deleted
+     */
+    private record Change(String className, long stamp, ClassSummary summary) {
+    }
+
+    private final Path root;
+    private final LibraryIndex libraries;
+    private final ScanEngine engine;
+    private final long debounceNanos;
+    private final Consumer<? super FrozenClassOrganizeMap> onUpdate;
+    private final OrganizeListener listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Thread thread;
+
+    // Every class that was ever indexed, by id, and everything known about them. Library classes share the ids.
+    // Only the watch thread uses these once it's started.
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private int classCount;
+    /**
+     * The classes that name each class, as a supertype or in a reference that {@link ClassOrganizer#findEdges}
+     * checks. Library classes are only listed under their supertypes.
+     */
+    private final Map<String, IntList> referrers = new HashMap<>();
+
+    // The parts of the index. Unlike Index.create, these are patched as classes change.
+    private final StringIntMap indexIds = new StringIntMap();
+    private ClassSummary[] declarations = new ClassSummary[16];
+    private final BitSet libraryClasses = new BitSet();
+    private final SymbolTable memberSymbols = new SymbolTable();
+    private final IntTripleMap memberAccess = new IntTripleMap();
+    private final ClassHierarchy hierarchy = new ClassHierarchy(indexIds, new ClassSummary[0], Workers.COMMON);
+    private final BitSet mergeTargets = new BitSet();
+    private final BitSet mergeCandidates = new BitSet();
+
+    private final SplittableUnionFind packages = new SplittableUnionFind();
+
+    private volatile FrozenClassOrganizeMap current;
+    private volatile Exception failure;
+
+    private ClassWatcher(
+        Path root,
+        LibraryIndex libraries,
+        ScanEngine engine,
+        Duration debounce,
+        Consumer<? super FrozenClassOrganizeMap> onUpdate,
+        OrganizeListener listener
+    ) throws IOException {
+        this.root = root;
+        this.libraries = libraries;
+        this.engine = engine;
+        debounceNanos = debounce.toNanos();
+        this.onUpdate = onUpdate;
+        this.listener = listener;
+        watchService = root.getFileSystem().newWatchService();
+        thread = new Thread(this::run, "class-organizer-watch");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Organizes a directory of class files and starts watching it. See
+     * {@link #start(Path, LibraryIndex, ScanEngine, Duration, Consumer, OrganizeListener)}.
+     */
+    public static ClassWatcher start(Path root, Consumer<? super FrozenClassOrganizeMap> onUpdate) throws IOException {
+        return start(root, LibraryIndex.EMPTY, ScanEngine.ASM, DEFAULT_DEBOUNCE, onUpdate, OrganizeListener.NONE);
+    }
+
+    /**
+     * Organizes a directory of class files and starts watching it for changes on a background thread. This returns
+     * once the first map is ready, which is available from {@link #current}.
+     * @param debounce How long the directory must go without changes before an update is made
+     * @param onUpdate Called on the watch thread with the map after each update. It isn't called with the first map.
+     * @param listener Notified of the first run and of each update as separate runs
+     */
+    public static ClassWatcher start(
+        Path root,
+        LibraryIndex libraries,
+        ScanEngine engine,
+        Duration debounce,
+        Consumer<? super FrozenClassOrganizeMap> onUpdate,
+        OrganizeListener listener
+    ) throws IOException {
+        final ClassWatcher watcher = new ClassWatcher(root, libraries, engine, debounce, onUpdate, listener);
+        try {
+            watcher.initialize();
+        } catch (IOException | RuntimeException e) {
+            watcher.watchService.close();
+            throw e;
+        }
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * @return The map from the most recent update
+     */
+    public FrozenClassOrganizeMap current() {
+        return current;
+    }
+
+    /**
+     * Stops watching, waiting for an update in progress to finish.
+     * @throws IOException If watching had already stopped because of an error. The error is rethrown.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final Exception failure = this.failure;
+        if (failure instanceof IOException io) {
+            throw io;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+    }
+
+    private void initialize() throws IOException {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        recorder.start(OrganizePhase.OPEN);
+        // Directories are registered before classes are listed, so nothing that changes in between is missed
+        scan(root, null);
+        final Change[] changes;
+        try (ClassSource source = ClassSource.directory(root)) {
+            recorder.end();
+            final List<String> classNames = source.classNames();
+            recorder.classCount(classNames.size());
+            recorder.start(OrganizePhase.READ);
+            final ClassSummary[] summaries = ClassOrganizer.readSummaries(source, engine, recorder, Workers.COMMON);
+            recorder.end();
+            changes = new Change[summaries.length];
+            for (int i = 0; i < summaries.length; i++) {
+                changes[i] = new Change(classNames.get(i), source.stamp(i), summaries[i]);
+            }
+        }
+        // The first map is an update from nothing
+        current = apply(changes, FrozenClassOrganizeMap.of(new String[0], new int[0]), recorder);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final Set<String> changed = new HashSet<>();
+                boolean overflowed = collect(watchService.take(), changed);
+                // Wait for the directory to be quiet, so that one build only causes one update
+                WatchKey key;
+                while ((key = watchService.poll(debounceNanos, TimeUnit.NANOSECONDS)) != null) {
+                    overflowed |= collect(key, changed);
+                }
+                if (overflowed) {
+                    // Events were lost, so check every class. Stamps keep this from reading unchanged classes.
+                    for (final Entry entry : entries) {
+                        if (entry.summary != null) {
+                            changed.add(entry.className);
+                        }
+                    }
+                    scan(root, changed);
+                }
+                final FrozenClassOrganizeMap result = update(changed);
+                if (result != null) {
+                    current = result;
+                    onUpdate.accept(result);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            try {
+                watchService.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+        }
+    }
+
+    /**
+     * Adds the classes that may have changed according to {@code key}'s events to {@code changed}.
+     * @return Whether events were lost
+     */
+    private boolean collect(WatchKey key, Set<String> changed) throws IOException {
+        final Path directory = directories.get(key);
+        boolean overflowed = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                overflowed = true;
+                continue;
+            }
+            final Path path = directory.resolve((Path)event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // A directory may have been moved in with classes already in it
+                scan(path, changed);
+            } else if (path.toString().endsWith(".class")) {
+                changed.add(DirectoryClassSource.className(root, path));
+            } else if (event.kind() == ENTRY_DELETE) {
+                // This may have been a directory, and there won't be events for what was in it
+                final String prefix = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/")
+                    + '/';
+                for (final Entry entry : entries) {
+                    if (entry.summary != null && entry.className.startsWith(prefix)) {
+                        changed.add(entry.className);
+                    }
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflowed;
+    }
+
+    /**
+     * Reads the classes in {@code changed} again and updates the map.
+     * @return The new map, or {@code null} if none of the classes actually changed
+     */
+    private FrozenClassOrganizeMap update(Set<String> changed) {
+        final OrganizeRecorder recorder = new OrganizeRecorder(listener);
+        recorder.classCount(classCount);
+        recorder.start(OrganizePhase.READ);
+        final Change[] changes = changed.parallelStream()
+            .map(className -> read(className, recorder))
+            .filter(Objects::nonNull)
+            .toArray(Change[]::new);
+        recorder.end();
+        if (changes.length == 0) {
+            return null;
+        }
+        return apply(changes, current, recorder);
+    }
+
+    /**
+     * Reads a class that may have changed.
+     * @return What changed, or {@code null} if nothing did
+     */
+    private Change read(String className, OrganizeRecorder recorder) {
+        final Entry entry = organizedEntry(className);
+        final Path file = DirectoryClassSource.classFile(root, className);
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(
+                file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS
+            );
+            if (!attributes.isRegularFile()) {
+                return entry != null ? new Change(className, 0, null) : null;
+            }
+            final long stamp = DirectoryClassSource.stamp(attributes);
+            if (entry != null && entry.stamp == stamp) {
+                return null;
+            }
+            final byte[] classFile = Files.readAllBytes(file);
+            recorder.classRead(classFile.length);
+            return new Change(className, stamp, engine.summarize(classFile));
+        } catch (NoSuchFileException e) {
+            return entry != null ? new Change(className, 0, null) : null;
+        } catch (IOException | RuntimeException e) {
+            // The class is most likely still being written. That causes another event, so it's read again then.
+            return null;
+        }
+    }
+
+    /**
+     * @return The entry of {@code className} if it is being organized, or else {@code null}
+     */
+    private Entry organizedEntry(String className) {
+        final Integer id = classIds.get(className);
+        if (id == null) {
+            return null;
+        }
+        final Entry entry = entries.get(id);
+        return entry.summary != null ? entry : null;
+    }
+
+    /**
+     * Patches everything with {@code changes}, and makes the map that follows {@code previous}.
+     */
+    private FrozenClassOrganizeMap apply(Change[] changes, FrozenClassOrganizeMap previous, OrganizeRecorder recorder) {
+        recorder.start(OrganizePhase.INDEX);
+        // Classes whose declarations changed, including classes that were added, removed or that became library
+        // classes. Of those, the ones whose supertypes may have changed, and the ones whose names now resolve
+        // differently.
+        final BitSet declared = new BitSet();
+        final BitSet supertypesChanged = new BitSet();
+        final BitSet renamed = new BitSet();
+        // Classes being organized whose edges have to be found again, and classes that aren't organized anymore
+        final BitSet stale = new BitSet();
+        final BitSet removed = new BitSet();
+        for (final Change change : changes) {
+            final Integer existing = classIds.get(change.className());
+            final ClassSummary summary = change.summary();
+            if (summary == null) {
+                final int id = existing;
+                final Entry entry = entries.get(id);
+                unindex(id, entry.summary);
+                entry.summary = null;
+                classCount--;
+                removed.set(id);
+                declared.set(id);
+                supertypesChanged.set(id);
+                renamed.set(id);
+                // A library class of the same name is no longer hidden by it
+                final ClassSummary library = libraries.find(change.className());
+                if (library != null) {
+                    indexLibraryClass(id, library);
+                    indexLibraryClasses(supertypes(library), declared, supertypesChanged, renamed);
+                } else {
+                    indexIds.put(change.className(), -1);
+                    declarations[id] = null;
+                }
+                continue;
+            }
+            final int id;
+            if (existing == null || entries.get(existing).summary == null) {
+                id = existing != null ? existing : newId(change.className());
+                if (libraryClasses.get(id)) {
+                    unindex(id, declarations[id]);
+                    libraryClasses.clear(id);
+                }
+                classCount++;
+                index(id, summary);
+                declared.set(id);
+                supertypesChanged.set(id);
+                renamed.set(id);
+            } else {
+                id = existing;
+                final ClassSummary old = entries.get(id).summary;
+                updateReferrers(id, old, summary);
+                if (!old.sameDeclarations(summary)) {
+                    ClassOrganizer.indexMembers(id, old, true, memberSymbols, memberAccess);
+                    ClassOrganizer.indexMembers(id, summary, false, memberSymbols, memberAccess);
+                    declarations[id] = summary;
+                    declared.set(id);
+                    if (!Objects.equals(old.superName, summary.superName) ||
+                        !Arrays.equals(old.interfaces, summary.interfaces)) {
+                        supertypesChanged.set(id);
+                    }
+                }
+            }
+            final Entry entry = entries.get(id);
+            entry.stamp = change.stamp();
+            entry.summary = summary;
+            stale.set(id);
+            if (!libraries.isEmpty()) {
+                indexLibraryClasses(Arrays.asList(summary.strings), declared, supertypesChanged, renamed);
+            }
+        }
+        recorder.classCount(classCount);
+
+        // Classes that name a renamed class as a supertype have to resolve it again
+        for (int id = renamed.nextSetBit(0); id >= 0; id = renamed.nextSetBit(id + 1)) {
+            final String className = entries.get(id).className;
+            final IntList users = referrers.get(className);
+            for (int i = 0; users != null && i < users.size(); i++) {
+                final ClassSummary user = declarations[users.get(i)];
+                if (user != null &&
+                    (className.equals(user.superName) || Arrays.asList(user.interfaces).contains(className))) {
+                    supertypesChanged.set(users.get(i));
+                }
+            }
+        }
+        final BitSet inherited = hierarchy.update(supertypesChanged, indexIds, declarations, Workers.COMMON);
+        for (int id = declared.nextSetBit(0); id >= 0; id = declared.nextSetBit(id + 1)) {
+            mergeTargets.set(
+                id, entries.get(id).summary != null && ClassOrganizer.Index.isMergeTarget(declarations[id])
+            );
+        }
+        // Whether members resolve through these classes, and where to, may have changed, so everything that refers
+        // to them has to be checked again
+        inherited.or(declared);
+        final BitSet affected = hierarchy.withSubtypes(inherited);
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            mergeCandidates.set(id, mergeTargets.get(id) || hierarchy.inheritsFrom(id, mergeTargets));
+            if (entries.get(id).summary != null) {
+                stale.set(id);
+            }
+            final IntList users = referrers.get(entries.get(id).className);
+            for (int i = 0; users != null && i < users.size(); i++) {
+                if (entries.get(users.get(i)).summary != null) {
+                    stale.set(users.get(i));
+                }
+            }
+        }
+        recorder.end();
+
+        recorder.start(OrganizePhase.FIND_EDGES);
+        final int[] staleIds = stale.stream().toArray();
+        final int[][] edges = new int[staleIds.length][];
+        final ClassOrganizer.Index index = new ClassOrganizer.Index(
+            libraryClasses, indexIds, declarations, memberSymbols, memberAccess, hierarchy, mergeCandidates
+        );
+        Workers.COMMON.forEach(staleIds.length, ClassOrganizer.EDGE_CHUNK, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                edges[i] = ClassOrganizer.findEdges(staleIds[i], entries.get(staleIds[i]).summary, index);
+            }
+            recorder.progress(end - start);
+        });
+        recorder.end();
+
+        final BitSet moved = merge(staleIds, edges, removed, recorder);
+
+        recorder.start(OrganizePhase.BUILD_MAP);
+        final TreeMap<String, Integer> changedPackages = new TreeMap<>();
+        for (int id = moved.nextSetBit(0); id >= 0; id = moved.nextSetBit(id + 1)) {
+            final Entry entry = entries.get(id);
+            changedPackages.put(entry.className, entry.summary != null ? packages.label(packages.find(id)) : -1);
+        }
+        final FrozenClassOrganizeMap result = previous.withChanges(
+            changedPackages.keySet().toArray(new String[0]),
+            changedPackages.values().stream().mapToInt(Integer::intValue).toArray()
+        );
+        recorder.largestPackageSize(result.largestPackageSize());
+        recorder.end();
+        return recorder.finish(result);
+    }
+
+    /**
+     * Applies the new edges to the union-find.
+     * @param staleIds The classes whose edges were found again
+     * @param edges Their new edges
+     * @param removed Classes that aren't being organized anymore
+     * @return The classes whose packages may have changed
+     */
+    private BitSet merge(int[] staleIds, int[][] edges, BitSet removed, OrganizeRecorder recorder) {
+        recorder.start(OrganizePhase.MERGE);
+        packages.ensureCapacity(entries.size());
+        final BitSet moved = new BitSet();
+        // Roots of sets that only have classes in moved, which don't have to be listed again when they are relabelled
+        final BitSet movedSets = new BitSet();
+        // Classes whose sets were split, so that all of their edges have to be applied again
+        final BitSet rejoin = new BitSet();
+        final IntConsumer splitMember = id -> {
+            moved.set(id);
+            movedSets.set(id);
+            rejoin.set(id);
+        };
+        for (int i = 0; i < staleIds.length; i++) {
+            final Entry entry = entries.get(staleIds[i]);
+            final int[] old = entry.edges;
+            entry.edges = edges[i];
+            if (old == null) {
+                // A new class, alone in its package so far
+                splitMember.accept(staleIds[i]);
+            } else if (!containsAll(edges[i], old)) {
+                // The edge that's gone may have been what joined the package, so start over with it
+                packages.split(packages.find(staleIds[i]), splitMember);
+            }
+        }
+        for (int id = removed.nextSetBit(0); id >= 0; id = removed.nextSetBit(id + 1)) {
+            entries.get(id).edges = null;
+            packages.split(packages.find(id), splitMember);
+        }
+
+        final long[] edgeCounts = new long[MergeCause.values().length];
+        final long[] mergeCounts = new long[MergeCause.values().length];
+        for (int id = rejoin.nextSetBit(0); id >= 0; id = rejoin.nextSetBit(id + 1)) {
+            final int[] classEdges = entries.get(id).edges;
+            for (int i = 0; classEdges != null && i < classEdges.length; i++) {
+                edgeCounts[classEdges[i] & ClassOrganizer.CAUSE_MASK]++;
+                join(id, classEdges[i], moved, movedSets, mergeCounts);
+            }
+        }
+        // Otherwise, edges can only have been added
+        for (int i = 0; i < staleIds.length; i++) {
+            if (rejoin.get(staleIds[i])) continue;
+            for (final int edge : edges[i]) {
+                edgeCounts[edge & ClassOrganizer.CAUSE_MASK]++;
+                join(staleIds[i], edge, moved, movedSets, mergeCounts);
+            }
+        }
+        for (final MergeCause cause : MergeCause.values()) {
+            recorder.edges(cause, edgeCounts[cause.ordinal()], mergeCounts[cause.ordinal()]);
+        }
+        recorder.end();
+        return moved;
+    }
+
+    private void join(int id, int edge, BitSet moved, BitSet movedSets, long[] mergeCounts) {
+        final int a = packages.find(id);
+        final int b = packages.find(edge >>> ClassOrganizer.CAUSE_BITS);
+        if (a == b) return;
+        mergeCounts[edge & ClassOrganizer.CAUSE_MASK]++;
+        // The joined package keeps the smaller label, so every class in the other one moves
+        final int relabelled = packages.label(a) < packages.label(b) ? b : a;
+        final int kept = relabelled == a ? b : a;
+        if (!movedSets.get(relabelled)) {
+            packages.forEachMember(relabelled, moved::set);
+        }
+        final boolean allMoved = movedSets.get(kept);
+        movedSets.set(packages.link(a, b), allMoved);
+    }
+
+    /**
+     * @return Whether the sorted array {@code values} has every value in the sorted array {@code subset}
+     */
+    private static boolean containsAll(int[] values, int[] subset) {
+        int i = 0;
+        for (final int value : subset) {
+            while (i < values.length && values[i] < value) {
+                i++;
+            }
+            if (i == values.length || values[i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int newId(String className) {
+        final int id = entries.size();
+        entries.add(new Entry(className));
+        classIds.put(className, id);
+        if (id == declarations.length) {
+            declarations = Arrays.copyOf(declarations, id * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Indexes a class that is now being organized.
+     */
+    private void index(int id, ClassSummary summary) {
+        indexIds.put(entries.get(id).className, id);
+        declarations[id] = summary;
+        ClassOrganizer.indexMembers(id, summary, false, memberSymbols, memberAccess);
+        updateReferrers(id, null, summary);
+    }
+
+    private void indexLibraryClass(int id, ClassSummary declaration) {
+        libraryClasses.set(id);
+        index(id, declaration);
+    }
+
+    /**
+     * Takes what a class declares out of the index, and takes it out of the referrers of the classes it names.
+     */
+    private void unindex(int id, ClassSummary summary) {
+        ClassOrganizer.indexMembers(id, summary, true, memberSymbols, memberAccess);
+        updateReferrers(id, summary, null);
+    }
+
+    /**
+     * Gives ids to the library classes in {@code classNames} and to their supertypes, like {@code Index.create} does
+     * for the strings of every class.
+     */
+    private void indexLibraryClasses(
+        Collection<String> classNames, BitSet declared, BitSet supertypesChanged, BitSet renamed
+    ) {
+        final ArrayDeque<String> pending = new ArrayDeque<>(classNames);
+        String className;
+        while ((className = pending.poll()) != null) {
+            if (indexIds.get(className) >= 0) continue;
+            final ClassSummary declaration = libraries.find(className);
+            if (declaration == null) continue;
+            final Integer existing = classIds.get(className);
+            final int id = existing != null ? existing : newId(className);
+            indexLibraryClass(id, declaration);
+            declared.set(id);
+            supertypesChanged.set(id);
+            renamed.set(id);
+            pending.addAll(supertypes(declaration));
+        }
+    }
+
+    private static List<String> supertypes(ClassSummary declaration) {
+        final List<String> result = new ArrayList<>(declaration.interfaces.length + 1);
+        if (declaration.superName != null) {
+            result.add(declaration.superName);
+        }
+        Collections.addAll(result, declaration.interfaces);
+        return result;
+    }
+
+    /**
+     * Moves {@code id} from the referrers of the classes {@code oldSummary} names to those of the classes
+     * {@code newSummary} names. Either may be {@code null}.
+     */
+    private void updateReferrers(int id, ClassSummary oldSummary, ClassSummary newSummary) {
+        final Set<String> oldNames = namedClasses(oldSummary);
+        final Set<String> newNames = namedClasses(newSummary);
+        for (final String className : oldNames) {
+            if (!newNames.contains(className)) {
+                referrers.get(className).removeValue(id);
+            }
+        }
+        for (final String className : newNames) {
+            if (!oldNames.contains(className)) {
+                referrers.computeIfAbsent(className, k -> new IntList(4)).add(id);
+            }
+        }
+    }
+
+    /**
+     * @return The classes whose changes can change the edges of {@code summary}'s class, or its place in the
+     * hierarchy: its supertypes, the classes it refers to, and the owners of the members it uses
+     */
+    private static Set<String> namedClasses(ClassSummary summary) {
+        if (summary == null) {
+            return Set.of();
+        }
+        final Set<String> result = new HashSet<>();
+        if (summary.superName != null) {
+            result.add(summary.superName);
+        }
+        Collections.addAll(result, summary.interfaces);
+        for (final int reference : summary.classReferences) {
+            result.add(summary.strings[reference]);
+        }
+        final int[] memberReferences = summary.memberReferences;
+        for (int i = 0; i < memberReferences.length; i += 3) {
+            result.add(summary.strings[memberReferences[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Watches {@code directory} and every directory under it, and adds the classes in them to {@code classNames}.
+     * Files and directories that are deleted while this runs are skipped.
+     */
+    private void scan(Path directory, Set<String> classNames) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                try {
+                    directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                } catch (NoSuchFileException e) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (classNames != null && attributes.isRegularFile() && file.toString().endsWith(".class")) {
+                    classNames.add(DirectoryClassSource.className(root, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free disjoint-set forest over {@code 0..size-1}.
+ * <p>
+ * Roots are always linked under the smaller of the two ids, so the root of every set is its smallest member. This
+ * makes the final forest independent of the order in which {@link #union} calls are made, no matter how many threads
+ * make them.
+ */
+final class ConcurrentUnionFind {
+    private final AtomicIntegerArray parent;
+
+    ConcurrentUnionFind(int size) {
+        parent = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            parent.set(i, i);
+        }
+    }
+
+    int size() {
+        return parent.length();
+    }
+
+    int find(int id) {
+        while (true) {
+            final int p = parent.get(id);
+            if (p == id) {
+                return id;
+            }
+            final int gp = parent.get(p);
+            if (gp == p) {
+                return p;
+            }
+            // Path halving. Parents only ever move towards the root, so losing this race is harmless.
+            parent.compareAndSet(id, p, gp);
+            id = gp;
+        }
+    }
+
+    /**
+     * @return Whether {@code a} and {@code b} were in different sets. Exactly one thread gets {@code true} for each
+     * pair of sets that is joined.
+     */
+    boolean union(int a, int b) {
+        while (true) {
+            a = find(a);
+            b = find(b);
+            if (a == b) return false;
+            if (a < b) {
+                final int temp = a;
+                a = b;
+                b = temp;
+            }
+            if (parent.compareAndSet(a, a, b)) return true;
+        }
+    }
+}
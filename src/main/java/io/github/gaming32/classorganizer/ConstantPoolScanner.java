@@ -0,0 +1,625 @@
+package io.github.gaming32.classorganizer;
+
+import org.objectweb.asm.Opcodes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reads a {@link ClassSummary} straight from the bytes of a class file, without ASM.
+ * <p>
+ * This finds exactly what {@link SummaryVisitor} does, so constant pool entries only count if something the visitor
+ * sees uses them. The bytecode is walked, but only the operands of instructions that refer to the constant pool are
+ * decoded. Stack map frames, nest and permitted subclass attributes, and unused entries are ignored, like ASM does
+ * with {@link org.objectweb.asm.ClassReader#SKIP_FRAMES SKIP_FRAMES}.
+ */
+final class ConstantPoolScanner {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // Opcodes that ASM only has internally
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int WIDE = 0xc4;
+
+    /**
+     * The length of each instruction, or {@code 0} for the variable length switch instructions, {@code wide}, and
+     * opcodes that don't exist
+     */
+    private static final byte[] INSTRUCTION_LENGTHS = new byte[256];
+
+    static {
+        Arrays.fill(INSTRUCTION_LENGTHS, 0, Opcodes.JSR + 1, (byte)1);
+        Arrays.fill(INSTRUCTION_LENGTHS, Opcodes.IRETURN, Opcodes.MONITOREXIT + 1, (byte)1);
+        Arrays.fill(INSTRUCTION_LENGTHS, Opcodes.IFEQ, Opcodes.JSR + 1, (byte)3);
+        Arrays.fill(INSTRUCTION_LENGTHS, Opcodes.ILOAD, Opcodes.ALOAD + 1, (byte)2);
+        Arrays.fill(INSTRUCTION_LENGTHS, Opcodes.ISTORE, Opcodes.ASTORE + 1, (byte)2);
+        Arrays.fill(INSTRUCTION_LENGTHS, Opcodes.GETSTATIC, Opcodes.INVOKESTATIC + 1, (byte)3);
+        INSTRUCTION_LENGTHS[Opcodes.BIPUSH] = 2;
+        INSTRUCTION_LENGTHS[Opcodes.SIPUSH] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.LDC] = 2;
+        INSTRUCTION_LENGTHS[LDC_W] = 3;
+        INSTRUCTION_LENGTHS[LDC2_W] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.IINC] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.RET] = 2;
+        INSTRUCTION_LENGTHS[Opcodes.INVOKEINTERFACE] = 5;
+        INSTRUCTION_LENGTHS[Opcodes.INVOKEDYNAMIC] = 5;
+        INSTRUCTION_LENGTHS[Opcodes.NEW] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.NEWARRAY] = 2;
+        INSTRUCTION_LENGTHS[Opcodes.ANEWARRAY] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.CHECKCAST] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.INSTANCEOF] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.MULTIANEWARRAY] = 4;
+        INSTRUCTION_LENGTHS[Opcodes.IFNULL] = 3;
+        INSTRUCTION_LENGTHS[Opcodes.IFNONNULL] = 3;
+        INSTRUCTION_LENGTHS[0xc8] = 5; // goto_w
+        INSTRUCTION_LENGTHS[0xc9] = 5; // jsr_w
+    }
+
+    private final byte[] b;
+    /**
+     * The offset of the tag of each constant pool entry
+     */
+    private final int[] entries;
+    private final String[] utf8Cache;
+    /**
+     * The {@linkplain SummaryBuilder#intern interned} id of each {@code CONSTANT_Utf8} entry plus one, or {@code 0}
+     * if it hasn't been interned yet. Entries are usually unique, so this hashes each string only once.
+     */
+    private final int[] symbols;
+    /**
+     * The {@code CONSTANT_Utf8} entries that have already been checked, at twice their index as descriptors and at
+     * one more than that as signatures
+     */
+    private final BitSet checked;
+    /**
+     * The member reference, {@code invokedynamic} and loadable constant pool entries that have already been checked
+     */
+    private final BitSet checkedEntries;
+    private final SummaryBuilder builder;
+    private char[] charBuffer = new char[64];
+    private final int headerOffset;
+    /**
+     * The offset of each entry of the {@code BootstrapMethods} attribute
+     */
+    private int[] bootstrapMethods = new int[0];
+
+    private ConstantPoolScanner(byte[] classFile) {
+        b = classFile;
+        if (classFile.length < 10 || readInt(0) != 0xcafebabe) {
+            throw new IllegalArgumentException("Not a class file");
+        }
+        final int count = readUnsignedShort(8);
+        entries = new int[count];
+        utf8Cache = new String[count];
+        symbols = new int[count];
+        checked = new BitSet(count * 2);
+        checkedEntries = new BitSet(count);
+        builder = new SummaryBuilder(count);
+        int pos = 10;
+        for (int i = 1; i < count; i++) {
+            entries[i] = pos;
+            switch (b[pos]) {
+                case CONSTANT_UTF8 -> pos += 3 + readUnsignedShort(pos + 1);
+                case CONSTANT_CLASS, CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE ->
+                    pos += 3;
+                case CONSTANT_METHOD_HANDLE -> pos += 4;
+                case CONSTANT_INTEGER,
+                    CONSTANT_FLOAT,
+                    CONSTANT_FIELDREF,
+                    CONSTANT_METHODREF,
+                    CONSTANT_INTERFACE_METHODREF,
+                    CONSTANT_NAME_AND_TYPE,
+                    CONSTANT_DYNAMIC,
+                    CONSTANT_INVOKE_DYNAMIC -> pos += 5;
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    pos += 9;
+                    i++;
+                }
+                default -> throw new IllegalArgumentException("Invalid constant pool tag " + b[pos] + " at " + pos);
+            }
+        }
+        headerOffset = pos;
+    }
+
+    static ClassSummary scan(byte[] classFile) {
+        return new ConstantPoolScanner(classFile).scan();
+    }
+
+    private ClassSummary scan() {
+        int pos = headerOffset;
+        int access = readUnsignedShort(pos);
+        final int superIndex = readUnsignedShort(pos + 4);
+        String superName = null;
+        if (superIndex != 0) {
+            superName = readClass(pos + 4);
+            builder.checkClass(readClassSymbol(pos + 4));
+        }
+        final String[] interfaces = new String[readUnsignedShort(pos + 6)];
+        pos += 8;
+        for (int i = 0; i < interfaces.length; i++, pos += 2) {
+            interfaces[i] = readClass(pos);
+            builder.checkClass(readClassSymbol(pos));
+        }
+
+        // Instructions can refer to the bootstrap methods, which come after all the members
+        final int membersOffset = pos;
+        pos = skipMembers(skipMembers(pos));
+        final int attributeCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            final String name = readUtf8(pos);
+            final int start = pos + 6;
+            pos = start + readInt(pos + 2);
+            if (scanCommonAttribute(name, start)) continue;
+            switch (name) {
+                case "InnerClasses" -> scanInnerClasses(start);
+                case "BootstrapMethods" -> readBootstrapMethods(start);
+                case "Record" -> {
+                    access |= Opcodes.ACC_RECORD;
+                    scanRecord(start);
+                }
+                case "Deprecated" -> access |= Opcodes.ACC_DEPRECATED;
+                case "Synthetic" -> access |= Opcodes.ACC_SYNTHETIC;
+            }
+        }
+
+        pos = membersOffset;
+        final int fieldCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            pos = scanMember(pos, false);
+        }
+        final int methodCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < methodCount; i++) {
+            pos = scanMember(pos, true);
+        }
+        return builder.toSummary(access, superName, interfaces);
+    }
+
+    /**
+     * @return The offset after the fields or methods starting at {@code pos}
+     */
+    private int skipMembers(int pos) {
+        final int count = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            final int attributeCount = readUnsignedShort(pos + 6);
+            pos += 8;
+            for (int j = 0; j < attributeCount; j++) {
+                pos += 6 + readInt(pos + 2);
+            }
+        }
+        return pos;
+    }
+
+    private void readBootstrapMethods(int pos) {
+        bootstrapMethods = new int[readUnsignedShort(pos)];
+        pos += 2;
+        for (int i = 0; i < bootstrapMethods.length; i++) {
+            bootstrapMethods[i] = pos;
+            pos += 4 + 2 * readUnsignedShort(pos + 2);
+        }
+    }
+
+    private void scanInnerClasses(int pos) {
+        final int count = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++, pos += 8) {
+            builder.checkClass(readClassSymbol(pos));
+            if (readUnsignedShort(pos + 2) != 0) {
+                builder.checkClass(readClassSymbol(pos + 2));
+            }
+        }
+    }
+
+    private int scanMember(int pos, boolean method) {
+        final int memberStart = pos;
+        int access = readUnsignedShort(pos);
+        checkDescriptorAt(pos + 4);
+        final int attributeCount = readUnsignedShort(pos + 6);
+        pos += 8;
+        for (int i = 0; i < attributeCount; i++) {
+            final String attributeName = readUtf8(pos);
+            final int start = pos + 6;
+            pos = start + readInt(pos + 2);
+            if (scanCommonAttribute(attributeName, start)) continue;
+            switch (attributeName) {
+                case "Deprecated" -> access |= Opcodes.ACC_DEPRECATED;
+                case "Synthetic" -> access |= Opcodes.ACC_SYNTHETIC;
+                case "RuntimeVisibleParameterAnnotations", "RuntimeInvisibleParameterAnnotations" -> {
+                    if (method) {
+                        scanParameterAnnotations(start);
+                    }
+                }
+                case "Code" -> {
+                    if (method) {
+                        scanCode(start);
+                    }
+                }
+                case "Exceptions" -> {
+                    if (method) {
+                        final int count = readUnsignedShort(start);
+                        for (int j = 0; j < count; j++) {
+                            builder.checkClass(readClassSymbol(start + 2 + 2 * j));
+                        }
+                    }
+                }
+            }
+        }
+        // Like ASM, report the pseudo access flags for the Deprecated and Synthetic attributes
+        builder.addMember(access, readSymbol(memberStart + 2), readSymbol(memberStart + 4));
+        return pos;
+    }
+
+    /**
+     * Scans the attributes that can appear on classes, fields, methods and record components alike.
+     * @return Whether the attribute was one of those
+     */
+    private boolean scanCommonAttribute(String name, int start) {
+        switch (name) {
+            case "Signature" -> checkSignatureAt(start);
+            case "RuntimeVisibleAnnotations", "RuntimeInvisibleAnnotations" -> scanAnnotations(start);
+            case "RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations" -> scanTypeAnnotations(start);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scanCode(int pos) {
+        final int codeStart = pos + 8;
+        pos = codeStart + readInt(pos + 4);
+        scanInstructions(codeStart, pos);
+        final int handlerCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < handlerCount; i++, pos += 8) {
+            if (readUnsignedShort(pos + 6) != 0) {
+                builder.checkClass(readClassSymbol(pos + 6));
+            }
+        }
+        int localVariables = 0;
+        int localVariableTypes = 0;
+        final int attributeCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            final String name = readUtf8(pos);
+            final int start = pos + 6;
+            pos = start + readInt(pos + 2);
+            switch (name) {
+                case "LocalVariableTable" -> localVariables = start;
+                case "LocalVariableTypeTable" -> localVariableTypes = start;
+                case "RuntimeVisibleTypeAnnotations", "RuntimeInvisibleTypeAnnotations" -> scanTypeAnnotations(start);
+            }
+        }
+        if (localVariables == 0) return;
+
+        final int variableCount = readUnsignedShort(localVariables);
+        for (int i = 0, entry = localVariables + 2; i < variableCount; i++, entry += 10) {
+            checkDescriptorAt(entry + 6);
+        }
+        if (localVariableTypes == 0) return;
+        // Like ASM, only use generic signatures that belong to a variable in the LocalVariableTable
+        final int typeCount = readUnsignedShort(localVariableTypes);
+        for (int i = 0, type = localVariableTypes + 2; i < typeCount; i++, type += 10) {
+            for (int j = 0, entry = localVariables + 2; j < variableCount; j++, entry += 10) {
+                if (readUnsignedShort(entry) == readUnsignedShort(type) &&
+                    readUnsignedShort(entry + 8) == readUnsignedShort(type + 8)
+                ) {
+                    checkSignatureAt(type + 6);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void scanInstructions(int pos, int end) {
+        final int start = pos;
+        while (pos < end) {
+            final int opcode = b[pos] & 0xff;
+            switch (opcode) {
+                case Opcodes.LDC -> checkConstant(b[pos + 1] & 0xff);
+                case LDC_W, LDC2_W -> checkConstant(readUnsignedShort(pos + 1));
+                case Opcodes.GETSTATIC,
+                    Opcodes.PUTSTATIC,
+                    Opcodes.GETFIELD,
+                    Opcodes.PUTFIELD,
+                    Opcodes.INVOKEVIRTUAL,
+                    Opcodes.INVOKESPECIAL,
+                    Opcodes.INVOKESTATIC,
+                    Opcodes.INVOKEINTERFACE -> checkMemberReference(readUnsignedShort(pos + 1));
+                case Opcodes.INVOKEDYNAMIC -> checkConstant(readUnsignedShort(pos + 1));
+                case Opcodes.NEW, Opcodes.ANEWARRAY, Opcodes.CHECKCAST, Opcodes.INSTANCEOF ->
+                    builder.checkClass(readClassSymbol(pos + 1));
+                case Opcodes.MULTIANEWARRAY -> checkDescriptorAt(entries[readUnsignedShort(pos + 1)] + 1);
+                case Opcodes.TABLESWITCH -> {
+                    // Operands are aligned to a multiple of 4 bytes from the start of the code
+                    pos = start + (pos - start + 4 & ~3);
+                    pos += 12 + 4 * (readInt(pos + 8) - readInt(pos + 4) + 1);
+                    continue;
+                }
+                case Opcodes.LOOKUPSWITCH -> {
+                    pos = start + (pos - start + 4 & ~3);
+                    pos += 8 + 8 * readInt(pos + 4);
+                    continue;
+                }
+                case WIDE -> {
+                    pos += (b[pos + 1] & 0xff) == Opcodes.IINC ? 6 : 4;
+                    continue;
+                }
+            }
+            final int length = INSTRUCTION_LENGTHS[opcode];
+            if (length == 0) {
+                throw new IllegalArgumentException("Invalid opcode " + opcode + " at " + pos);
+            }
+            pos += length;
+        }
+    }
+
+    /**
+     * Checks the constant pool entry an {@code ldc} or {@code invokedynamic} instruction or a bootstrap method argument
+     * refers to
+     */
+    private void checkConstant(int index) {
+        if (checkedEntries.get(index)) return;
+        checkedEntries.set(index);
+        final int entry = entries[index];
+        switch (b[entry]) {
+            case CONSTANT_CLASS -> {
+                // ASM loads these as Types, so arrays refer to their element class
+                final String name = readUtf8(entry + 1);
+                if (!name.isEmpty() && name.charAt(0) == '[') {
+                    checkDescriptorAt(entry + 1);
+                } else {
+                    builder.checkClass(readSymbol(entry + 1));
+                }
+            }
+            case CONSTANT_METHOD_TYPE -> checkDescriptorAt(entry + 1);
+            case CONSTANT_METHOD_HANDLE -> checkMemberReference(readUnsignedShort(entry + 2));
+            case CONSTANT_DYNAMIC, CONSTANT_INVOKE_DYNAMIC -> checkDynamic(entry);
+        }
+    }
+
+    /**
+     * Checks a {@code CONSTANT_Fieldref}, {@code CONSTANT_Methodref} or {@code CONSTANT_InterfaceMethodref} entry
+     */
+    private void checkMemberReference(int index) {
+        if (checkedEntries.get(index)) return;
+        checkedEntries.set(index);
+        final int entry = entries[index];
+        final int nameAndType = entries[readUnsignedShort(entry + 3)];
+        builder.checkMember(readClassSymbol(entry + 1), readSymbol(nameAndType + 1), readSymbol(nameAndType + 3));
+    }
+
+    /**
+     * Checks the {@code CONSTANT_Dynamic} or {@code CONSTANT_InvokeDynamic} entry at {@code entry}, and its bootstrap
+     * method
+     */
+    private void checkDynamic(int entry) {
+        checkDescriptorAt(entries[readUnsignedShort(entry + 3)] + 3);
+        final int bootstrapMethod = readUnsignedShort(entry + 1);
+        if (bootstrapMethod >= bootstrapMethods.length) {
+            throw new IllegalArgumentException("Invalid bootstrap method " + bootstrapMethod);
+        }
+        final int pos = bootstrapMethods[bootstrapMethod];
+        checkConstant(readUnsignedShort(pos));
+        final int argumentCount = readUnsignedShort(pos + 2);
+        for (int i = 0; i < argumentCount; i++) {
+            checkConstant(readUnsignedShort(pos + 4 + 2 * i));
+        }
+    }
+
+    private void scanRecord(int pos) {
+        final int componentCount = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < componentCount; i++) {
+            checkDescriptorAt(pos + 2);
+            final int attributeCount = readUnsignedShort(pos + 4);
+            pos += 6;
+            for (int j = 0; j < attributeCount; j++) {
+                final int start = pos + 6;
+                scanCommonAttribute(readUtf8(pos), start);
+                pos = start + readInt(pos + 2);
+            }
+        }
+    }
+
+    /**
+     * @return The offset after the annotations
+     */
+    private int scanAnnotations(int pos) {
+        final int count = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            pos = scanAnnotation(pos);
+        }
+        return pos;
+    }
+
+    private void scanParameterAnnotations(int pos) {
+        final int parameterCount = b[pos++] & 0xff;
+        for (int i = 0; i < parameterCount; i++) {
+            pos = scanAnnotations(pos);
+        }
+    }
+
+    private void scanTypeAnnotations(int pos) {
+        final int count = readUnsignedShort(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            final int targetType = b[pos++] & 0xff;
+            pos += switch (targetType) {
+                case 0x00, 0x01, 0x16 -> 1;
+                case 0x10, 0x11, 0x12, 0x17, 0x42, 0x43, 0x44, 0x45, 0x46 -> 2;
+                case 0x13, 0x14, 0x15 -> 0;
+                case 0x40, 0x41 -> 2 + 6 * readUnsignedShort(pos);
+                case 0x47, 0x48, 0x49, 0x4a, 0x4b -> 3;
+                default -> throw new IllegalArgumentException("Invalid type annotation target " + targetType);
+            };
+            pos += 1 + 2 * (b[pos] & 0xff);
+            pos = scanAnnotation(pos);
+        }
+    }
+
+    private int scanAnnotation(int pos) {
+        checkDescriptorAt(pos);
+        final int pairCount = readUnsignedShort(pos + 2);
+        pos += 4;
+        for (int i = 0; i < pairCount; i++) {
+            pos = scanElementValue(pos + 2);
+        }
+        return pos;
+    }
+
+    private int scanElementValue(int pos) {
+        switch (b[pos++]) {
+            case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's' -> {
+                return pos + 2;
+            }
+            case 'e' -> {
+                builder.checkEnumConstant(readUtf8(pos), readUtf8(pos + 2));
+                return pos + 4;
+            }
+            case 'c' -> {
+                checkDescriptorAt(pos);
+                return pos + 2;
+            }
+            case '@' -> {
+                return scanAnnotation(pos);
+            }
+            case '[' -> {
+                final int count = readUnsignedShort(pos);
+                pos += 2;
+                for (int i = 0; i < count; i++) {
+                    pos = scanElementValue(pos);
+                }
+                return pos;
+            }
+            default -> throw new IllegalArgumentException("Invalid element value tag " + b[pos - 1]);
+        }
+    }
+
+    /**
+     * Checks the descriptor whose {@code CONSTANT_Utf8} index is at {@code pos}, unless it was already checked.
+     */
+    private void checkDescriptorAt(int pos) {
+        if (markChecked(pos, 0)) {
+            builder.checkDescriptor(readUtf8(pos));
+        }
+    }
+
+    /**
+     * Checks the generic signature whose {@code CONSTANT_Utf8} index is at {@code pos}, unless it was already checked.
+     */
+    private void checkSignatureAt(int pos) {
+        if (markChecked(pos, 1)) {
+            builder.checkSignature(readUtf8(pos));
+        }
+    }
+
+    /**
+     * @return Whether the {@code CONSTANT_Utf8} entry whose index is at {@code pos} wasn't checked this way before
+     */
+    private boolean markChecked(int pos, int kind) {
+        final int index = readUnsignedShort(pos) * 2 + kind;
+        if (checked.get(index)) {
+            return false;
+        }
+        checked.set(index);
+        return true;
+    }
+
+    /**
+     * Interns the {@code CONSTANT_Utf8} entry whose index is at {@code pos}.
+     */
+    private int readSymbol(int pos) {
+        final int index = readUnsignedShort(pos);
+        final int symbol = symbols[index];
+        if (symbol != 0) {
+            return symbol - 1;
+        }
+        final int result = builder.intern(readUtf8(pos));
+        symbols[index] = result + 1;
+        return result;
+    }
+
+    /**
+     * Interns the name of the {@code CONSTANT_Class} entry whose index is at {@code pos}.
+     */
+    private int readClassSymbol(int pos) {
+        return readSymbol(entries[readUnsignedShort(pos)] + 1);
+    }
+
+    private String readClass(int pos) {
+        return readUtf8(entries[readUnsignedShort(pos)] + 1);
+    }
+
+    /**
+     * Reads the {@code CONSTANT_Utf8} entry whose index is at {@code pos}.
+     */
+    private String readUtf8(int pos) {
+        final int index = readUnsignedShort(pos);
+        final String cached = utf8Cache[index];
+        if (cached != null) {
+            return cached;
+        }
+        final int entry = entries[index];
+        if (b[entry] != CONSTANT_UTF8) {
+            throw new IllegalArgumentException("Constant pool entry " + index + " is not a Utf8");
+        }
+        return utf8Cache[index] = decodeUtf8(entry + 3, readUnsignedShort(entry + 1));
+    }
+
+    private String decodeUtf8(int pos, int length) {
+        final int end = pos + length;
+        int ascii = pos;
+        while (ascii < end && b[ascii] >= 0) {
+            ascii++;
+        }
+        if (ascii == end) {
+            return new String(b, pos, length, StandardCharsets.ISO_8859_1);
+        }
+        if (charBuffer.length < length) {
+            charBuffer = new char[length];
+        }
+        final char[] chars = charBuffer;
+        int count = 0;
+        while (pos < end) {
+            final int c = b[pos++];
+            if (c >= 0) {
+                chars[count++] = (char)c;
+            } else if ((c & 0xe0) == 0xc0) {
+                chars[count++] = (char)(((c & 0x1f) << 6) | (b[pos++] & 0x3f));
+            } else {
+                chars[count++] = (char)(((c & 0xf) << 12) | ((b[pos++] & 0x3f) << 6) | (b[pos++] & 0x3f));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int readUnsignedShort(int pos) {
+        return (b[pos] & 0xff) << 8 | b[pos + 1] & 0xff;
+    }
+
+    private int readInt(int pos) {
+        return (b[pos] & 0xff) << 24 | (b[pos + 1] & 0xff) << 16 | (b[pos + 2] & 0xff) << 8 | b[pos + 3] & 0xff;
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a cache file can't be decoded. Caches are rebuilt when this happens, unlike with other
+ * {@link IOException}s, which mean the file couldn't be read at all.
+ */
+final class CorruptCacheException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    CorruptCacheException(String message) {
+        super(message);
+    }
+}
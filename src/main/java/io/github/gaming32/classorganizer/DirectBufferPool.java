@@ -0,0 +1,54 @@
+package io.github.gaming32.classorganizer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable direct buffers in power-of-two sizes. Allocating direct memory is slow, so buffers are kept around once
+ * they've been used, up to a fixed number of each size.
+ */
+final class DirectBufferPool {
+    private static final int MIN_SHIFT = 12; // 4 KiB
+    private static final int MAX_SHIFT = 20; // 1 MiB
+
+    private final List<ArrayBlockingQueue<ByteBuffer>> free;
+
+    /**
+     * @param buffersPerSize How many buffers of each size to keep
+     */
+    DirectBufferPool(int buffersPerSize) {
+        free = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+        for (int shift = MIN_SHIFT; shift <= MAX_SHIFT; shift++) {
+            free.add(new ArrayBlockingQueue<>(buffersPerSize));
+        }
+    }
+
+    /**
+     * @return A buffer with exactly {@code size} bytes remaining. Buffers larger than the largest pooled size are
+     * heap buffers.
+     */
+    ByteBuffer acquire(int size) {
+        final int shift = shift(size);
+        if (shift > MAX_SHIFT) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer result = free.get(shift - MIN_SHIFT).poll();
+        if (result == null) {
+            result = ByteBuffer.allocateDirect(1 << shift);
+        }
+        return result.clear().limit(size);
+    }
+
+    void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) return;
+        final int shift = shift(buffer.capacity());
+        // If the pool is already full, the buffer is left to the garbage collector
+        free.get(shift - MIN_SHIFT).offer(buffer);
+    }
+
+    private static int shift(int size) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+}
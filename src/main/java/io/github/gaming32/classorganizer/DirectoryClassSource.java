@@ -0,0 +1,153 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+final class DirectoryClassSource implements ClassSource {
+    private final Path root;
+    private final List<String> classNames;
+    private final Semaphore readPermits;
+    private final DirectBufferPool buffers;
+    private ExecutorService ioExecutor;
+
+    DirectoryClassSource(Path root, int maxConcurrentReads) throws IOException {
+        if (maxConcurrentReads <= 0) {
+            throw new IllegalArgumentException("maxConcurrentReads must be positive");
+        }
+        this.root = root;
+        try (Stream<Path> stream = Files.find(root, Integer.MAX_VALUE, (p, a) -> a.isRegularFile() && p.toString().endsWith(".class"))) {
+            classNames = stream
+                .map(path -> className(root, path))
+                .toList();
+        }
+        readPermits = new Semaphore(maxConcurrentReads);
+        buffers = new DirectBufferPool(maxConcurrentReads);
+    }
+
+    @Override
+    public List<String> classNames() {
+        return classNames;
+    }
+
+    @Override
+    public byte[] read(int index) throws IOException {
+        return Files.readAllBytes(path(index));
+    }
+
+    /**
+     * Reads the files on a dedicated I/O pool rather than {@code executor}, so slow disks don't hold up threads that
+     * could be parsing. This blocks while too many reads are already in flight.
+     */
+    @Override
+    public CompletableFuture<byte[][]> readAsync(int start, int end, Executor executor) {
+        readPermits.acquireUninterruptibly();
+        final CompletableFuture<byte[][]> result = new CompletableFuture<>();
+        try {
+            ioExecutor().execute(() -> {
+                try {
+                    final byte[][] classFiles = new byte[end - start][];
+                    for (int i = start; i < end; i++) {
+                        classFiles[i - start] = readPooled(path(i));
+                    }
+                    result.complete(classFiles);
+                } catch (IOException e) {
+                    result.completeExceptionally(new UncheckedIOException(e));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    readPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            readPermits.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a file through a pooled direct buffer sized from its length. Files on other file systems, like the JDK's
+     * {@code jrt:/}, can't always be opened as channels and are read directly.
+     */
+    private byte[] readPooled(Path path) throws IOException {
+        if (path.getFileSystem() != FileSystems.getDefault()) {
+            return Files.readAllBytes(path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException(path + " is too large");
+            }
+            final ByteBuffer buffer = buffers.acquire((int)size);
+            try {
+                while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+                    // The file may shrink while it's being read, so only what was actually read is kept
+                }
+                final byte[] bytes = new byte[buffer.flip().remaining()];
+                buffer.get(bytes);
+                return bytes;
+            } finally {
+                buffers.release(buffer);
+            }
+        }
+    }
+
+    @Override
+    public long stamp(int index) throws IOException {
+        return stamp(Files.readAttributes(path(index), BasicFileAttributes.class));
+    }
+
+    static long stamp(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) * 31 + attributes.size();
+    }
+
+    /**
+     * @return The internal name of the class in {@code classFile}, a {@code .class} file under {@code root}
+     */
+    static String className(Path root, Path classFile) {
+        final String result = root.relativize(classFile)
+            .toString()
+            .replace(classFile.getFileSystem().getSeparator(), "/");
+        return result.substring(0, result.length() - 6);
+    }
+
+    /**
+     * @return The file of the class named {@code className} under {@code root}
+     */
+    static Path classFile(Path root, String className) {
+        return root.resolve(className.replace("/", root.getFileSystem().getSeparator()).concat(".class"));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+        }
+    }
+
+    private synchronized ExecutorService ioExecutor() {
+        if (ioExecutor == null) {
+            // Every task holds a permit, so this never grows past the read limit
+            ioExecutor = Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task, "class-organizer-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ioExecutor;
+    }
+
+    private Path path(int index) {
+        return classFile(root, classNames.get(index));
+    }
+}
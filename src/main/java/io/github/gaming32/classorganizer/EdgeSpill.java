@@ -0,0 +1,167 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The edge lists of many classes, kept in memory up to a fixed budget and spilled to a temporary file after that.
+ * The buffer starts small and doubles up to the budget, so a run with few edges doesn't pay for the whole budget.
+ * <p>
+ * Each list is stored as {@code class id, edge count, edges...}. The file is created on the first spill and deleted
+ * when this is closed.
+ */
+final class EdgeSpill implements Closeable {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    @FunctionalInterface
+    interface EdgeConsumer {
+        void accept(int classId, int edge);
+    }
+
+    private final Path directory;
+    /**
+     * How many ints {@link #buffer} may grow to
+     */
+    private final int capacity;
+    private int[] buffer;
+    private int size;
+    private FileChannel file;
+    private ByteBuffer ioBuffer;
+    private long spilledBytes;
+
+    /**
+     * @param budget How many bytes of edges to keep in memory
+     * @param directory Where to create the spill file, or {@code null} for the default temporary directory
+     */
+    EdgeSpill(long budget, Path directory) {
+        this.directory = directory;
+        capacity = (int)Math.min(budget / Integer.BYTES, Integer.MAX_VALUE - 8);
+        buffer = new int[Math.min(capacity, INITIAL_BUFFER_SIZE)];
+    }
+
+    void add(int classId, int[] edges) throws IOException {
+        if (edges.length == 0) return;
+        final int length = 2 + edges.length;
+        if (size + length > buffer.length && buffer.length < capacity) {
+            buffer = Arrays.copyOf(
+                buffer, (int)Math.min(capacity, Math.max(2L * buffer.length, (long)size + length))
+            );
+        }
+        if (size + length > buffer.length) {
+            spill();
+            if (length > buffer.length) {
+                // Too big to ever fit, so it goes straight to disk
+                write(new int[] {classId, edges.length}, 2);
+                write(edges, edges.length);
+                return;
+            }
+        }
+        buffer[size++] = classId;
+        buffer[size++] = edges.length;
+        System.arraycopy(edges, 0, buffer, size, edges.length);
+        size += edges.length;
+    }
+
+    /**
+     * @return How many bytes have been written to disk so far
+     */
+    long spilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Passes every edge to {@code consumer}, reading back whatever was spilled.
+     */
+    void forEach(EdgeConsumer consumer) throws IOException {
+        if (file != null) {
+            final ByteBuffer in = ioBuffer();
+            in.clear().flip();
+            long position = 0;
+            int classId = -1;
+            int remaining = -1;
+            while (position < spilledBytes || in.hasRemaining()) {
+                if (in.remaining() < Integer.BYTES) {
+                    in.compact();
+                    final int read = file.read(in, position);
+                    if (read < 0) {
+                        throw new EOFException("Spill file is shorter than what was written to it");
+                    }
+                    position += read;
+                    in.flip();
+                    continue;
+                }
+                final int value = in.getInt();
+                if (classId < 0) {
+                    classId = value;
+                } else if (remaining < 0) {
+                    remaining = value;
+                } else {
+                    consumer.accept(classId, value);
+                    if (--remaining == 0) {
+                        classId = -1;
+                        remaining = -1;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; ) {
+            final int classId = buffer[i++];
+            final int count = buffer[i++];
+            for (final int end = i + count; i < end; i++) {
+                consumer.accept(classId, buffer[i]);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        if (size == 0) return;
+        write(buffer, size);
+        size = 0;
+    }
+
+    private void write(int[] values, int length) throws IOException {
+        if (file == null) {
+            final Path path = directory != null
+                ? Files.createTempFile(directory, "class-organizer", ".edges")
+                : Files.createTempFile("class-organizer", ".edges");
+            file = FileChannel.open(
+                path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE
+            );
+        }
+        final ByteBuffer out = ioBuffer().clear();
+        final IntBuffer ints = out.asIntBuffer();
+        for (int i = 0; i < length; ) {
+            final int count = Math.min(length - i, ints.capacity());
+            ints.clear();
+            ints.put(values, i, count);
+            out.clear().limit(count * Integer.BYTES);
+            while (out.hasRemaining()) {
+                spilledBytes += file.write(out, spilledBytes);
+            }
+            i += count;
+        }
+    }
+
+    private ByteBuffer ioBuffer() {
+        if (ioBuffer == null) {
+            ioBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        }
+        return ioBuffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * An immutable snapshot of a {@link ClassOrganizeMap}, made with {@link ClassOrganizeMap#freeze}, or by
+ * {@link ClassWatcher}.
+ * <p>
+ * Everything is kept in dense arrays that are never modified after construction, so any number of threads can query
+ * this at once without locking. Classes are sorted by name and found by binary search, and each package's classes
+ * are a contiguous range of {@code packageClasses}, CSR-style. Lookups don't allocate, and neither do the views
+ * returned by {@link #getClasses}, which are built up front.
+ */
+public final class FrozenClassOrganizeMap {
+    private final String[] classNames;
+    private final int[] classPackages;
+    private final int[] packageIds;
+    private final int[] packageStarts;
+    private final int[] packageClasses;
+    private final List<Set<String>> packageViews;
+    /**
+     * Built on first use, since it boxes every id
+     */
+    private volatile NavigableSet<Integer> packageIdSet;
+
+    /**
+     * @param classNames Every class, sorted
+     * @param classPackages The package id of each class
+     */
+    static FrozenClassOrganizeMap of(String[] classNames, int[] classPackages) {
+        final int[] packageIds = Arrays.stream(classPackages).sorted().distinct().toArray();
+        // Store package indices rather than ids, so that a class's range is one lookup away
+        final int[] classPackageIndices = new int[classPackages.length];
+        for (int i = 0; i < classPackages.length; i++) {
+            classPackageIndices[i] = Arrays.binarySearch(packageIds, classPackages[i]);
+        }
+        return new FrozenClassOrganizeMap(classNames, packageIds, classPackageIndices);
+    }
+
+    /**
+     * @param packageIds The id of every package, sorted
+     * @param classPackageIndices The index in {@code packageIds} of each class's package
+     */
+    private FrozenClassOrganizeMap(String[] classNames, int[] packageIds, int[] classPackageIndices) {
+        this.classNames = classNames;
+        this.packageIds = packageIds;
+        classPackages = classPackageIndices;
+        packageStarts = new int[packageIds.length + 1];
+        for (final int packageIndex : classPackages) {
+            packageStarts[packageIndex + 1]++;
+        }
+        for (int i = 0; i < packageIds.length; i++) {
+            packageStarts[i + 1] += packageStarts[i];
+        }
+        // Classes are visited in sorted order, so each package's range comes out sorted too
+        packageClasses = new int[classNames.length];
+        final int[] fill = Arrays.copyOf(packageStarts, packageIds.length);
+        for (int i = 0; i < classNames.length; i++) {
+            packageClasses[fill[classPackages[i]]++] = i;
+        }
+
+        final List<Set<String>> packageViews = new ArrayList<>(packageIds.length);
+        for (int i = 0; i < packageIds.length; i++) {
+            packageViews.add(new PackageView(i));
+        }
+        this.packageViews = packageViews;
+    }
+
+    /**
+     * Makes the next snapshot from this one. The changes are merged into copies of this snapshot's arrays, so only
+     * the changed classes are sorted and looked up, and the rest is linear copying.
+     * @param changedClasses The classes that moved, were added or were removed, sorted and without duplicates
+     * @param changedPackages The new package of each of those classes, or {@code -1} if it was removed
+     */
+    FrozenClassOrganizeMap withChanges(String[] changedClasses, int[] changedPackages) {
+        // Merge the class lists. Each class remembers where its package comes from: its index in this snapshot, or
+        // for a changed class, -1 - its index in the changes.
+        final String[] names = new String[classNames.length + changedClasses.length];
+        final int[] sources = new int[names.length];
+        final int[] packageSizes = new int[packageIds.length];
+        for (int i = 0; i < packageIds.length; i++) {
+            packageSizes[i] = packageStarts[i + 1] - packageStarts[i];
+        }
+        int count = 0;
+        int from = 0;
+        for (int change = 0; change < changedClasses.length; change++) {
+            final int found = Arrays.binarySearch(classNames, from, classNames.length, changedClasses[change]);
+            final int end = found >= 0 ? found : -found - 1;
+            System.arraycopy(classNames, from, names, count, end - from);
+            for (int i = from; i < end; i++) {
+                sources[count++] = i;
+            }
+            if (found >= 0) {
+                packageSizes[classPackages[found]]--;
+                from = found + 1;
+            } else {
+                from = end;
+            }
+            if (changedPackages[change] >= 0) {
+                names[count] = changedClasses[change];
+                sources[count++] = -1 - change;
+            }
+        }
+        System.arraycopy(classNames, from, names, count, classNames.length - from);
+        for (int i = from; i < classNames.length; i++) {
+            sources[count++] = i;
+        }
+
+        // Packages that lost every class are dropped, and new packages are merged in
+        final IntList newPackageIds = new IntList();
+        for (int change = 0; change < changedPackages.length; change++) {
+            final int pkg = changedPackages[change];
+            if (pkg < 0) continue;
+            final int packageIndex = Arrays.binarySearch(packageIds, pkg);
+            if (packageIndex >= 0) {
+                packageSizes[packageIndex]++;
+            } else {
+                newPackageIds.add(pkg);
+            }
+        }
+        final int[] added = newPackageIds.toSortedSet();
+        final int[] newIds = new int[packageIds.length + added.length];
+        final int[] newIndices = new int[packageIds.length];
+        int packageCount = 0;
+        for (int i = 0, a = 0; i < packageIds.length || a < added.length; ) {
+            if (a < added.length && (i == packageIds.length || added[a] < packageIds[i])) {
+                newIds[packageCount++] = added[a++];
+            } else if (packageSizes[i] > 0) {
+                newIndices[i] = packageCount;
+                newIds[packageCount++] = packageIds[i++];
+            } else {
+                newIndices[i++] = -1;
+            }
+        }
+        final int[] finalIds = Arrays.copyOf(newIds, packageCount);
+
+        final int[] classPackageIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int source = sources[i];
+            classPackageIndices[i] = source >= 0
+                ? newIndices[classPackages[source]]
+                : Arrays.binarySearch(finalIds, changedPackages[-1 - source]);
+        }
+        return new FrozenClassOrganizeMap(Arrays.copyOf(names, count), finalIds, classPackageIndices);
+    }
+
+    public int classCount() {
+        return classNames.length;
+    }
+
+    public int packageCount() {
+        return packageIds.length;
+    }
+
+    public boolean containsClass(String clazz) {
+        return Arrays.binarySearch(classNames, clazz) >= 0;
+    }
+
+    /**
+     * @return The package of {@code clazz}, or {@code null} if it isn't in this map. Use {@link #getPackageOrDefault}
+     * to avoid boxing.
+     */
+    public Integer getPackage(String clazz) {
+        final int classIndex = Arrays.binarySearch(classNames, clazz);
+        return classIndex >= 0 ? packageIds[classPackages[classIndex]] : null;
+    }
+
+    public int getPackageOrDefault(String clazz, int defaultPackage) {
+        final int classIndex = Arrays.binarySearch(classNames, clazz);
+        return classIndex >= 0 ? packageIds[classPackages[classIndex]] : defaultPackage;
+    }
+
+    /**
+     * @return Whether {@code class1} and {@code class2} are both in this map, and in the same package
+     */
+    public boolean samePackage(String class1, String class2) {
+        final int index1 = Arrays.binarySearch(classNames, class1);
+        if (index1 < 0) {
+            return false;
+        }
+        final int index2 = Arrays.binarySearch(classNames, class2);
+        return index2 >= 0 && classPackages[index1] == classPackages[index2];
+    }
+
+    /**
+     * @return The classes in {@code pkg}, sorted. This is the same unmodifiable set every time.
+     */
+    public Set<String> getClasses(int pkg) {
+        final int packageIndex = Arrays.binarySearch(packageIds, pkg);
+        return packageIndex >= 0 ? packageViews.get(packageIndex) : Collections.emptySet();
+    }
+
+    /**
+     * Passes every class in {@code pkg} to {@code action} in sorted order, without allocating an iterator.
+     */
+    public void forEachClass(int pkg, Consumer<? super String> action) {
+        final int packageIndex = Arrays.binarySearch(packageIds, pkg);
+        if (packageIndex < 0) return;
+        for (int i = packageStarts[packageIndex], end = packageStarts[packageIndex + 1]; i < end; i++) {
+            action.accept(classNames[packageClasses[i]]);
+        }
+    }
+
+    public NavigableSet<Integer> getPackagesIds() {
+        NavigableSet<Integer> result = packageIdSet;
+        if (result == null) {
+            final TreeSet<Integer> packageIdSet = new TreeSet<>();
+            for (final int packageId : packageIds) {
+                packageIdSet.add(packageId);
+            }
+            // Racing threads build equal sets, so it doesn't matter whose is kept
+            this.packageIdSet = result = Collections.unmodifiableNavigableSet(packageIdSet);
+        }
+        return result;
+    }
+
+    /**
+     * @return Every class, sorted
+     */
+    public List<String> classList() {
+        return Collections.unmodifiableList(Arrays.asList(classNames));
+    }
+
+    /**
+     * Copies this snapshot into a regular, modifiable {@link ClassOrganizeMap}.
+     */
+    public ClassOrganizeMap toClassOrganizeMap() {
+        final ClassOrganizeMap result = new ClassOrganizeMap(classNames.length);
+        for (int packageIndex = 0; packageIndex < packageIds.length; packageIndex++) {
+            for (int i = packageStarts[packageIndex]; i < packageStarts[packageIndex + 1]; i++) {
+                result.addClass(classNames[packageClasses[i]], packageIds[packageIndex]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return How many classes the largest package has
+     */
+    int largestPackageSize() {
+        int result = 0;
+        for (int i = 0; i < packageIds.length; i++) {
+            result = Math.max(result, packageStarts[i + 1] - packageStarts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return The id of the package at {@code packageIndex}. Packages are indexed in id order.
+     */
+    int packageIdAt(int packageIndex) {
+        return packageIds[packageIndex];
+    }
+
+    /**
+     * @return The position of the first class in the package at {@code packageIndex}, or the number of classes if
+     * {@code packageIndex} is {@link #packageCount}. The classes of a package are at the positions up to the start of
+     * the next one.
+     */
+    int packageStart(int packageIndex) {
+        return packageStarts[packageIndex];
+    }
+
+    /**
+     * @see #packageStart
+     */
+    String packageClass(int position) {
+        return classNames[packageClasses[position]];
+    }
+
+    private final class PackageView extends AbstractSet<String> {
+        private final int packageIndex;
+
+        PackageView(int packageIndex) {
+            this.packageIndex = packageIndex;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                int next = packageStarts[packageIndex];
+
+                @Override
+                public boolean hasNext() {
+                    return next < packageStarts[packageIndex + 1];
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return classNames[packageClasses[next++]];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return packageStarts[packageIndex + 1] - packageStarts[packageIndex];
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String clazz)) {
+                return false;
+            }
+            final int classIndex = Arrays.binarySearch(classNames, clazz);
+            return classIndex >= 0 && classPackages[classIndex] == packageIndex;
+        }
+    }
+}
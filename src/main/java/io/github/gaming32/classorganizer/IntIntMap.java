@@ -0,0 +1,140 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing {@code int -> int} hash map with linear probing. Missing keys map to {@code -1}.
+ */
+final class IntIntMap {
+    private static final int FREE = 0;
+    private static final int USED = 1;
+
+    private int[] keys;
+    private int[] values;
+    private byte[] states;
+    private int size;
+
+    IntIntMap() {
+        this(16);
+    }
+
+    IntIntMap(int expectedSize) {
+        final int capacity = tableSizeFor(expectedSize);
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+    }
+
+    IntIntMap(IntIntMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        states = other.states.clone();
+        size = other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int key) {
+        return slot(key) >= 0;
+    }
+
+    int get(int key) {
+        final int slot = slot(key);
+        return slot >= 0 ? values[slot] : -1;
+    }
+
+    void put(int key, int value) {
+        final int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (states[slot] == USED) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        states[slot] = USED;
+        if (++size > keys.length >> 1) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    void remove(int key) {
+        int slot = slot(key);
+        if (slot < 0) return;
+        final int mask = keys.length - 1;
+        size--;
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int next = (slot + 1) & mask;
+        while (states[next] == USED) {
+            final int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        states[slot] = FREE;
+    }
+
+    void clear() {
+        Arrays.fill(states, (byte)FREE);
+        size = 0;
+    }
+
+    /**
+     * @return The keys of this map, in no particular order.
+     */
+    int[] keys() {
+        final int[] result = new int[size];
+        int i = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (states[slot] == USED) {
+                result[i++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    private int slot(int key) {
+        final int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (states[slot] == USED) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        final byte[] oldStates = states;
+        keys = new int[capacity];
+        values = new int[capacity];
+        states = new byte[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldStates[slot] == USED) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    static int mix(int x) {
+        final int h = x * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        final int wanted = Math.max(4, expectedSize) << 1;
+        return Integer.highestOneBit(wanted - 1) << 1;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * Open-addressing {@code (int, int, int) -> int} hash map with linear probing. Missing keys map to {@code -1}, and
+ * keys must not be negative.
+ */
+final class IntTripleMap {
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntTripleMap() {
+        this(16);
+    }
+
+    IntTripleMap(int expectedSize) {
+        allocate(IntIntMap.tableSizeFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int a, int b, int c) {
+        if ((a | b | c) < 0) {
+            return -1;
+        }
+        final int[] keys = this.keys;
+        final int mask = values.length - 1;
+        int slot = hash(a, b, c) & mask;
+        int key;
+        while ((key = keys[slot * 3]) >= 0) {
+            if (key == a && keys[slot * 3 + 1] == b && keys[slot * 3 + 2] == c) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The previous value, or {@code -1} if there was none
+     */
+    int put(int a, int b, int c, int value) {
+        final int mask = values.length - 1;
+        int slot = hash(a, b, c) & mask;
+        int key;
+        while ((key = keys[slot * 3]) >= 0) {
+            if (key == a && keys[slot * 3 + 1] == b && keys[slot * 3 + 2] == c) {
+                final int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot * 3] = a;
+        keys[slot * 3 + 1] = b;
+        keys[slot * 3 + 2] = c;
+        values[slot] = value;
+        if (++size > values.length >> 1) {
+            rehash(values.length << 1);
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity * 3];
+        values = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            keys[slot * 3] = -1;
+        }
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldKeys[slot * 3] >= 0) {
+                put(oldKeys[slot * 3], oldKeys[slot * 3 + 1], oldKeys[slot * 3 + 2], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int hash(int a, int b, int c) {
+        return IntIntMap.mix((a * 31 + b) * 31 + c);
+    }
+}
@@ -0,0 +1,383 @@
+package io.github.gaming32.classorganizer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Moves the classes of a jar into the packages of a {@link ClassOrganizeMap}, rewriting every reference to them.
+ * <p>
+ * Classes are rewritten in parallel, a batch at a time, and written out in the order of the input. Only classes
+ * that are moved or refer to a moved class are inflated again after being rewritten. Every other entry, including
+ * resources, is copied as the compressed bytes already in the input.
+ * <p>
+ * Only class names in class files are changed. Class names in resources, like {@code META-INF/MANIFEST.MF} or
+ * service files, are left as they are.
+ */
+public final class JarRepackager {
+    private static final int BATCH_SIZE = 256;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+
+    private JarRepackager() {
+    }
+
+    /**
+     * Organizes a jar and repackages it in one go, mapping the jar once for both.
+     * @param packageNames The internal name of the package with each id. An empty name is the default package.
+     * @return The map the jar was repackaged with
+     */
+    public static ClassOrganizeMap organizeAndRepackage(
+        Path input, Path output, IntFunction<String> packageNames
+    ) throws IOException {
+        final ZipArchive archive = new ZipArchive(input);
+        final ClassOrganizeMap map = ClassOrganizer.organize(new ArchiveClassSource(archive));
+        repackage(archive, output, map, packageNames);
+        return map;
+    }
+
+    /**
+     * Writes a copy of {@code input} to {@code output} with the classes in {@code map} moved to their packages. A
+     * class keeps its simple name unless another class in its new package already has it, in which case a number is
+     * added to the end. Module descriptors, package descriptors and versioned classes of multi-release jars stay where
+     * they are.
+     * @param packageNames The internal name of the package with each id. An empty name is the default package.
+     */
+    public static void repackage(
+        Path input, Path output, ClassOrganizeMap map, IntFunction<String> packageNames
+    ) throws IOException {
+        repackage(new ZipArchive(input), output, map, packageNames);
+    }
+
+    /**
+     * Names packages {@code a}, {@code b}, ..., {@code z}, {@code aa}, {@code ab} and so on. Package {@code 0} is the
+     * default package.
+     */
+    public static String packageName(int id) {
+        // https://stackoverflow.com/a/182924/8840278
+        final StringBuilder result = new StringBuilder();
+        while (id != 0) {
+            final int modulo = (id - 1) % 26;
+            result.append((char)('a' + modulo));
+            id = (id - modulo) / 26;
+        }
+        return result.reverse().toString();
+    }
+
+    private static void repackage(
+        ZipArchive archive, Path output, ClassOrganizeMap map, IntFunction<String> packageNames
+    ) throws IOException {
+        final Set<String> inputClasses = new HashSet<>();
+        for (int entry = 0; entry < archive.entryCount(); entry++) {
+            final String name = archive.name(entry);
+            if (name.endsWith(".class")) {
+                inputClasses.add(name.substring(0, name.length() - 6));
+            }
+        }
+        final Map<String, String> newNames = newNames(inputClasses, map, packageNames);
+
+        final Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // The input may be the output, so it can't be overwritten until everything has been read from it
+        final Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".tmp");
+        try {
+            try (ZipWriter writer = new ZipWriter(temp)) {
+                for (int start = 0; start < archive.entryCount(); start += BATCH_SIZE) {
+                    final Entry[] batch;
+                    try {
+                        batch = IntStream.range(start, Math.min(start + BATCH_SIZE, archive.entryCount()))
+                            .parallel()
+                            .mapToObj(entry -> {
+                                try {
+                                    return rewrite(archive, entry, inputClasses, newNames);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            })
+                            .toArray(Entry[]::new);
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    for (final Entry entry : batch) {
+                        writer.add(entry);
+                    }
+                }
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return The new internal name of every class that is moved
+     */
+    private static Map<String, String> newNames(
+        Set<String> inputClasses, ClassOrganizeMap map, IntFunction<String> packageNames
+    ) throws IOException {
+        final Map<String, String> result = new HashMap<>();
+        final ClassNamer namer = new ClassNamer(map.freeze(), packageNames, inputClasses);
+        namer.forEach(inputClasses::contains, (clazz, packageName, simpleStart, suffix) -> {
+            final String newName = ClassNamer.newName(clazz, packageName, simpleStart, suffix);
+            if (!newName.equals(clazz)) {
+                result.put(clazz, newName);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Module and package descriptors only mean anything where they are, and neither do classes for other Java
+     * versions in a multi-release jar.
+     */
+    static boolean isMovable(String clazz) {
+        return !clazz.startsWith("META-INF/") && !hasSimpleName(clazz, "module-info") &&
+            !hasSimpleName(clazz, "package-info");
+    }
+
+    private static boolean hasSimpleName(String clazz, String simpleName) {
+        final int start = clazz.length() - simpleName.length();
+        return clazz.endsWith(simpleName) && (start == 0 || clazz.charAt(start - 1) == '/');
+    }
+
+    private static Entry rewrite(
+        ZipArchive archive, int entry, Set<String> inputClasses, Map<String, String> newNames
+    ) throws IOException {
+        final String name = archive.name(entry);
+        final Entry raw = new Entry(
+            name,
+            archive.flags(entry) & ~DATA_DESCRIPTOR_FLAG,
+            archive.method(entry),
+            archive.time(entry),
+            archive.crc(entry),
+            archive.size(entry),
+            archive.rawData(entry)
+        );
+        if (!name.endsWith(".class") || !inputClasses.contains(name.substring(0, name.length() - 6))) {
+            return raw;
+        }
+        final String className = name.substring(0, name.length() - 6);
+
+        final boolean[] changed = {false};
+        final Remapper remapper = new Remapper() {
+            @Override
+            public String map(String internalName) {
+                final String result = newNames.get(internalName);
+                if (result != null) {
+                    changed[0] = true;
+                }
+                return result;
+            }
+        };
+        final ClassWriter writer = new ClassWriter(0);
+        new ClassReader(archive.read(entry)).accept(new ClassRemapper(writer, remapper), 0);
+        if (!changed[0]) {
+            return raw;
+        }
+
+        final byte[] classFile = writer.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(classFile);
+        return new Entry(
+            newNames.getOrDefault(className, className) + ".class",
+            0,
+            ZipArchive.DEFLATED,
+            archive.time(entry),
+            (int)crc.getValue(),
+            classFile.length,
+            deflate(classFile)
+        );
+    }
+
+    private static ByteBuffer deflate(byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] result = new byte[data.length / 2 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                length += deflater.deflate(result, length, result.length - length);
+            }
+            return ByteBuffer.wrap(result, 0, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * An entry to write, with its data as it will be stored.
+     */
+    private record Entry(String name, int flags, int method, int time, int crc, long size, ByteBuffer data) {
+    }
+
+    /**
+     * Writes a zip archive sequentially. Entries are written without data descriptors or extra fields, since their
+     * sizes are always known up front.
+     */
+    private static final class ZipWriter implements Closeable {
+        private static final int VERSION = 20;
+        private static final int ZIP64_VERSION = 45;
+        private static final long MAX_SIZE = 0xffffffffL;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private ByteBuffer central = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        private long entryCount;
+
+        ZipWriter(Path file) throws IOException {
+            channel = FileChannel.open(
+                file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING
+            );
+        }
+
+        void add(Entry entry) throws IOException {
+            final byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            final long compressedSize = entry.data().remaining();
+            if (entry.size() >= MAX_SIZE || compressedSize >= MAX_SIZE || position >= MAX_SIZE) {
+                throw new ZipException(entry.name() + " doesn't fit in a zip archive without zip64 entries");
+            }
+            if (name.length > 0xffff) {
+                throw new ZipException("Entry name is too long: " + entry.name());
+            }
+            final int flags = entry.flags() | UTF8_FLAG;
+            final long offset = position;
+
+            ensureBuffered(ZipArchive.LOCAL_HEADER_SIZE + name.length);
+            buffer.putInt(ZipArchive.LOCAL_SIGNATURE)
+                .putShort((short)VERSION)
+                .putShort((short)flags)
+                .putShort((short)entry.method())
+                .putInt(entry.time())
+                .putInt(entry.crc())
+                .putInt((int)compressedSize)
+                .putInt((int)entry.size())
+                .putShort((short)name.length)
+                .putShort((short)0)
+                .put(name);
+            position += ZipArchive.LOCAL_HEADER_SIZE + name.length;
+            writeData(entry.data().duplicate());
+
+            central = ensureCapacity(central, ZipArchive.CENTRAL_HEADER_SIZE + name.length);
+            central.putInt(ZipArchive.CENTRAL_SIGNATURE)
+                .putShort((short)VERSION)
+                .putShort((short)VERSION)
+                .putShort((short)flags)
+                .putShort((short)entry.method())
+                .putInt(entry.time())
+                .putInt(entry.crc())
+                .putInt((int)compressedSize)
+                .putInt((int)entry.size())
+                .putShort((short)name.length)
+                .putShort((short)0) // Extra length
+                .putShort((short)0) // Comment length
+                .putShort((short)0) // Disk number
+                .putShort((short)0) // Internal attributes
+                .putInt(0) // External attributes
+                .putInt((int)offset)
+                .put(name);
+            entryCount++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                final long centralOffset = position;
+                final long centralSize = central.position();
+                if (centralOffset >= MAX_SIZE) {
+                    throw new ZipException("Central directory doesn't fit in a zip archive without zip64");
+                }
+                writeData(central.flip());
+                if (entryCount >= 0xffff) {
+                    final long zip64End = position;
+                    ensureBuffered(56 + 20);
+                    buffer.putInt(ZipArchive.ZIP64_END_SIGNATURE)
+                        .putLong(56 - 12)
+                        .putShort((short)ZIP64_VERSION)
+                        .putShort((short)ZIP64_VERSION)
+                        .putInt(0)
+                        .putInt(0)
+                        .putLong(entryCount)
+                        .putLong(entryCount)
+                        .putLong(centralSize)
+                        .putLong(centralOffset);
+                    buffer.putInt(ZipArchive.ZIP64_LOCATOR_SIGNATURE)
+                        .putInt(0)
+                        .putLong(zip64End)
+                        .putInt(1);
+                }
+                final short count = (short)Math.min(entryCount, 0xffff);
+                ensureBuffered(ZipArchive.END_SIZE);
+                buffer.putInt(ZipArchive.END_SIGNATURE)
+                    .putShort((short)0)
+                    .putShort((short)0)
+                    .putShort(count)
+                    .putShort(count)
+                    .putInt((int)centralSize)
+                    .putInt((int)centralOffset)
+                    .putShort((short)0);
+                flush();
+            }
+        }
+
+        private void writeData(ByteBuffer data) throws IOException {
+            position += data.remaining();
+            if (data.remaining() <= buffer.remaining()) {
+                buffer.put(data);
+                return;
+            }
+            flush();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        private void ensureBuffered(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private static ByteBuffer ensureCapacity(ByteBuffer buffer, int length) {
+            if (buffer.remaining() >= length) {
+                return buffer;
+            }
+            final ByteBuffer result = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            return result.put(buffer.flip());
+        }
+    }
+}
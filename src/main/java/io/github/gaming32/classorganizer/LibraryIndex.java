@@ -0,0 +1,482 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Classes that organized classes refer to but that are never reorganized themselves, like dependency jars.
+ * <p>
+ * Only what other classes need to know about a library class is kept: its access, supertypes and declared members.
+ * This lets member references resolve through library superclasses, and protected members be checked against the
+ * library part of a class's hierarchy. Library classes never get packages, so referring to them never merges
+ * anything.
+ * <p>
+ * Indexing a jar is slow, so the index of each jar is saved in a cache directory under the SHA-256 hash of its
+ * contents, and memory-mapped instead of parsing the jar again on later runs. Classes are found through a hash table
+ * stored in the file, and only the classes that are looked up are ever decoded, so opening a saved index takes the
+ * same time however large it is. If a saved index turns out to be corrupt, the jar is indexed again.
+ */
+public final class LibraryIndex {
+    public static final LibraryIndex EMPTY = new LibraryIndex(List.of());
+
+    private static final int MAGIC = 0x434f4c49; // COLI
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    // String count, class count, slot count, and where the tables start
+    private static final int FOOTER_SIZE = 16;
+
+    private final List<Library> libraries;
+
+    private LibraryIndex(List<Library> libraries) {
+        this.libraries = libraries;
+    }
+
+    /**
+     * Indexes jars and directories of library classes. Directories are indexed every time. If a class is in more
+     * than one library, the first one is used.
+     * @param cacheDirectory Where the index of each jar is saved. It is created if it doesn't exist.
+     */
+    public static LibraryIndex load(List<Path> libraries, Path cacheDirectory) throws IOException {
+        final List<Library> result = new ArrayList<>(libraries.size());
+        for (final Path library : libraries) {
+            result.add(Files.isDirectory(library)
+                ? new Library(null, null, index(ClassSource.directory(library)))
+                : loadArchive(library, cacheDirectory));
+        }
+        return new LibraryIndex(List.copyOf(result));
+    }
+
+    /**
+     * @return How many classes the libraries have, counting a class in more than one library once. With more than one
+     * library, this reads the name of every class.
+     */
+    public int classCount() {
+        if (libraries.size() == 1) {
+            return libraries.get(0).query(Table::classCount);
+        }
+        final Set<String> classNames = new HashSet<>();
+        for (final Library library : libraries) {
+            library.query(table -> {
+                for (int i = 0; i < table.classCount(); i++) {
+                    classNames.add(table.className(i));
+                }
+                return null;
+            });
+        }
+        return classNames.size();
+    }
+
+    boolean isEmpty() {
+        return libraries.isEmpty();
+    }
+
+    /**
+     * @return The {@linkplain ClassSummary#declarations declarations} of the library class named {@code className},
+     * or {@code null} if there is none. A class is decoded every time it's found, so callers should only look it up
+     * once.
+     * @throws UncheckedIOException If a saved index is corrupt and its jar can't be indexed again
+     */
+    ClassSummary find(String className) {
+        for (final Library library : libraries) {
+            final ClassSummary result = library.query(table -> {
+                final int index = table.indexOf(className);
+                return index >= 0 ? table.declarations(index) : null;
+            });
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @throws UncheckedIOException If a saved index is corrupt and its jar can't be indexed again
+     */
+    boolean contains(String className) {
+        for (final Library library : libraries) {
+            if (library.query(table -> table.indexOf(className) >= 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Library loadArchive(Path archive, Path cacheDirectory) throws IOException {
+        final Path cacheFile = cacheDirectory.resolve(hash(archive) + ".coli");
+        final Table cached = MappedTable.open(cacheFile);
+        if (cached != null) {
+            return new Library(archive, cacheFile, cached);
+        }
+        final HeapTable result = index(ClassSource.archive(archive));
+        result.save(cacheFile);
+        return new Library(archive, cacheFile, result);
+    }
+
+    private static HeapTable index(ClassSource source) throws IOException {
+        try (source) {
+            final String[] classNames = source.classNames().toArray(new String[0]);
+            final ClassSummary[] declarations = new ClassSummary[classNames.length];
+            try {
+                Arrays.parallelSetAll(declarations, index -> {
+                    try {
+                        return ScanEngine.CONSTANT_POOL.summarize(source.read(index)).declarations();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return new HeapTable(classNames, declarations);
+        }
+    }
+
+    /**
+     * @return The SHA-256 hash of {@code file}'s contents, in hex
+     */
+    private static String hash(Path file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported", e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static int slot(String className, int mask) {
+        final int hash = className.hashCode();
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    /**
+     * One jar or directory. A jar whose saved index turns out to be corrupt is indexed again the first time that's
+     * noticed, which may be in the middle of a run.
+     */
+    private static final class Library {
+        private final Path archive;
+        private final Path cacheFile;
+        private volatile Table table;
+
+        /**
+         * @param archive The jar, or {@code null} for a directory, whose table is never saved and can't be corrupt
+         */
+        Library(Path archive, Path cacheFile, Table table) {
+            this.archive = archive;
+            this.cacheFile = cacheFile;
+            this.table = table;
+        }
+
+        <T> T query(Query<T> query) {
+            Table table = this.table;
+            while (true) {
+                try {
+                    return query.run(table);
+                } catch (CorruptCacheException e) {
+                    table = reindex(table);
+                }
+            }
+        }
+
+        private synchronized Table reindex(Table corrupt) {
+            // Another thread may have already done this
+            if (table == corrupt) {
+                try {
+                    final HeapTable result = index(ClassSource.archive(archive));
+                    result.save(cacheFile);
+                    table = result;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return table;
+        }
+    }
+
+    private interface Query<T> {
+        T run(Table table) throws CorruptCacheException;
+    }
+
+    /**
+     * The classes of one library, by index.
+     */
+    private interface Table {
+        int classCount();
+
+        String className(int index) throws CorruptCacheException;
+
+        /**
+         * @return The index of the class named {@code className}, or {@code -1} if there is none
+         */
+        int indexOf(String className) throws CorruptCacheException;
+
+        ClassSummary declarations(int index) throws CorruptCacheException;
+    }
+
+    private static final class HeapTable implements Table {
+        private final String[] classNames;
+        private final ClassSummary[] declarations;
+        private final StringIntMap indices;
+
+        HeapTable(String[] classNames, ClassSummary[] declarations) {
+            this.classNames = classNames;
+            this.declarations = declarations;
+            indices = new StringIntMap(classNames.length);
+            for (int i = 0; i < classNames.length; i++) {
+                indices.put(classNames[i], i);
+            }
+        }
+
+        @Override
+        public int classCount() {
+            return classNames.length;
+        }
+
+        @Override
+        public String className(int index) {
+            return classNames[index];
+        }
+
+        @Override
+        public int indexOf(String className) {
+            return indices.get(className);
+        }
+
+        @Override
+        public ClassSummary declarations(int index) {
+            return declarations[index];
+        }
+
+        /**
+         * Writes this table to {@code file}, replacing it atomically, in the format {@link MappedTable} reads. Strings
+         * are stored once in a table, like in {@link SummaryCache}. The offsets of strings and classes, and a hash
+         * table of class names, come after them, and the file ends with where those are.
+         */
+        void save(Path file) throws IOException {
+            final Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    final SymbolTable table = new SymbolTable(classNames.length * 4);
+                    for (int i = 0; i < classNames.length; i++) {
+                        table.intern(classNames[i]);
+                        declarations[i].internStrings(table);
+                    }
+                    final int[] stringOffsets = new int[table.size()];
+                    for (int i = 0; i < table.size(); i++) {
+                        stringOffsets[i] = out.size();
+                        out.writeUTF(table.symbol(i));
+                    }
+                    final int[] declarationOffsets = new int[classNames.length];
+                    for (int i = 0; i < classNames.length; i++) {
+                        declarationOffsets[i] = out.size();
+                        declarations[i].writeTo(out, table);
+                    }
+
+                    final int tablesStart = out.size();
+                    for (final int offset : stringOffsets) {
+                        out.writeInt(offset);
+                    }
+                    for (int i = 0; i < classNames.length; i++) {
+                        out.writeInt(table.get(classNames[i]));
+                        out.writeInt(declarationOffsets[i]);
+                    }
+                    // At most half full, so that misses end quickly
+                    final int[] slots = new int[Integer.highestOneBit(Math.max(classNames.length, 1)) << 2];
+                    for (int i = 0; i < classNames.length; i++) {
+                        int slot = slot(classNames[i], slots.length - 1);
+                        while (slots[slot] != 0) {
+                            slot = slot + 1 & slots.length - 1;
+                        }
+                        slots[slot] = i + 1;
+                    }
+                    for (final int slot : slots) {
+                        out.writeInt(slot);
+                    }
+
+                    out.writeInt(stringOffsets.length);
+                    out.writeInt(classNames.length);
+                    out.writeInt(slots.length);
+                    out.writeInt(tablesStart);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * A saved table, read straight from the mapped file. Nothing is decoded until it's asked for, and anything that
+     * doesn't decode throws a {@link CorruptCacheException}.
+     */
+    private static final class MappedTable implements Table {
+        private final ByteBuffer data;
+        private final int stringCount;
+        private final int classCount;
+        private final int slotCount;
+        private final int tablesStart;
+
+        private MappedTable(ByteBuffer data, int stringCount, int classCount, int slotCount, int tablesStart) {
+            this.data = data;
+            this.stringCount = stringCount;
+            this.classCount = classCount;
+            this.slotCount = slotCount;
+            this.tablesStart = tablesStart;
+        }
+
+        /**
+         * @return The saved table, or {@code null} if it is missing, outdated, or its layout is corrupt. Only the
+         * header and footer are checked, and the rest is checked as it's read.
+         */
+        static MappedTable open(Path file) throws IOException {
+            final ByteBuffer data;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_SIZE + FOOTER_SIZE) {
+                    return null;
+                }
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                return null;
+            }
+            final int footer = data.capacity() - FOOTER_SIZE;
+            final int stringCount = data.getInt(footer);
+            final int classCount = data.getInt(footer + 4);
+            final int slotCount = data.getInt(footer + 8);
+            final int tablesStart = data.getInt(footer + 12);
+            if (stringCount < 0 || classCount < 0 || slotCount <= classCount || Integer.bitCount(slotCount) != 1 ||
+                tablesStart < HEADER_SIZE ||
+                tablesStart + 4L * (stringCount + 2L * classCount + slotCount) != footer) {
+                return null;
+            }
+            return new MappedTable(data, stringCount, classCount, slotCount, tablesStart);
+        }
+
+        @Override
+        public int classCount() {
+            return classCount;
+        }
+
+        @Override
+        public String className(int index) throws CorruptCacheException {
+            return string(data.getInt(classEntry(index)));
+        }
+
+        @Override
+        public int indexOf(String className) throws CorruptCacheException {
+            final int slotsStart = tablesStart + 4 * (stringCount + 2 * classCount);
+            final int mask = slotCount - 1;
+            // The table is never full, so this ends at an empty slot unless the file is corrupt
+            for (int slot = slot(className, mask), probes = 0; probes < slotCount; slot = slot + 1 & mask, probes++) {
+                final int entry = data.getInt(slotsStart + 4 * slot);
+                if (entry == 0) {
+                    return -1;
+                }
+                if (entry < 0 || entry > classCount) {
+                    throw new CorruptCacheException("Invalid class index " + (entry - 1));
+                }
+                if (className(entry - 1).equals(className)) {
+                    return entry - 1;
+                }
+            }
+            throw new CorruptCacheException("Class hash table is full");
+        }
+
+        @Override
+        public ClassSummary declarations(int index) throws CorruptCacheException {
+            try {
+                return ClassSummary.readFrom(input(data.getInt(classEntry(index) + 4)), this::string);
+            } catch (CorruptCacheException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                throw corrupt(e);
+            }
+        }
+
+        private int classEntry(int index) {
+            return tablesStart + 4 * (stringCount + 2 * index);
+        }
+
+        private String string(int id) throws CorruptCacheException {
+            if (id < 0 || id >= stringCount) {
+                throw new CorruptCacheException("Invalid string id " + id);
+            }
+            try {
+                return DataInputStream.readUTF(input(data.getInt(tablesStart + 4 * id)));
+            } catch (CorruptCacheException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                throw corrupt(e);
+            }
+        }
+
+        /**
+         * @return The data from {@code offset} to the start of the tables
+         */
+        private DataInputStream input(int offset) throws CorruptCacheException {
+            if (offset < HEADER_SIZE || offset >= tablesStart) {
+                throw new CorruptCacheException("Invalid offset " + offset);
+            }
+            return new DataInputStream(new ByteBufferInputStream(data.slice(offset, tablesStart - offset)));
+        }
+
+        private static CorruptCacheException corrupt(Exception cause) {
+            final CorruptCacheException result = new CorruptCacheException(cause.toString());
+            result.initCause(cause);
+            return result;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A read-only {@link ClassOrganizeMap} saved with {@link ClassOrganizeMap#save}, queried straight from a
+ * memory-mapped file.
+ * <p>
+ * Opening only reads the header. Classes are numbered so that every package's classes are a contiguous range, sorted
+ * by name within the package. The file layout, after a header of {@code magic, version, classCount, packageCount,
+ * nameBytesLength}, is:
+ * <ul>
+ *     <li>{@code int[packageCount]} package ids, ascending</li>
+ *     <li>{@code int[packageCount + 1]} the first class of each package</li>
+ *     <li>{@code int[classCount]} the package index of each class</li>
+ *     <li>{@code int[classCount + 1]} the offset of each class's name in the name table</li>
+ *     <li>{@code int[classCount]} classes sorted by name, for binary search</li>
+ *     <li>{@code byte[nameBytesLength]} the UTF-8 name table, each name stored once</li>
+ * </ul>
+ */
+public final class MappedClassOrganizeMap {
+    private static final int MAGIC = 0x434f4d50; // COMP
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    private final ByteBuffer data;
+    private final int classCount;
+    private final int packageCount;
+    private final int packageIdsOffset;
+    private final int packageStartsOffset;
+    private final int classPackagesOffset;
+    private final int nameOffsetsOffset;
+    private final int sortedOffset;
+    private final int namesOffset;
+
+    private MappedClassOrganizeMap(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a saved ClassOrganizeMap");
+        }
+        final int version = data.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported ClassOrganizeMap format version " + version);
+        }
+        classCount = data.getInt(8);
+        packageCount = data.getInt(12);
+        final int nameBytesLength = data.getInt(16);
+        final long expectedSize = HEADER_SIZE + 8L * packageCount + 12L * classCount + 8 + nameBytesLength;
+        if (classCount < 0 || packageCount < 0 || nameBytesLength < 0 || expectedSize != data.capacity()) {
+            throw new IOException("Truncated or corrupt ClassOrganizeMap file");
+        }
+        packageIdsOffset = HEADER_SIZE;
+        packageStartsOffset = packageIdsOffset + packageCount * 4;
+        classPackagesOffset = packageStartsOffset + (packageCount + 1) * 4;
+        nameOffsetsOffset = classPackagesOffset + classCount * 4;
+        sortedOffset = nameOffsetsOffset + (classCount + 1) * 4;
+        namesOffset = sortedOffset + classCount * 4;
+    }
+
+    public static MappedClassOrganizeMap open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            return new MappedClassOrganizeMap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static void write(ClassOrganizeMap map, Path file) throws IOException {
+        final NavigableMap<Integer, Set<String>> packages = map.getPackages();
+        final int classCount = map.classCount();
+        final int packageCount = packages.size();
+        final byte[][] names = new byte[classCount][];
+        final int[] packageIds = new int[packageCount];
+        final int[] packageStarts = new int[packageCount + 1];
+        final int[] classPackages = new int[classCount];
+        int classId = 0;
+        int packageIndex = 0;
+        for (final var entry : packages.entrySet()) {
+            packageIds[packageIndex] = entry.getKey();
+            packageStarts[packageIndex] = classId;
+            final int start = classId;
+            for (final String clazz : entry.getValue()) {
+                classPackages[classId] = packageIndex;
+                names[classId++] = clazz.getBytes(StandardCharsets.UTF_8);
+            }
+            Arrays.sort(names, start, classId, Arrays::compareUnsigned);
+            packageIndex++;
+        }
+        packageStarts[packageCount] = classId;
+
+        final Integer[] sorted = new Integer[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            int nameBytesLength = 0;
+            for (final byte[] name : names) {
+                nameBytesLength += name.length;
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(classCount);
+            out.writeInt(packageCount);
+            out.writeInt(nameBytesLength);
+            for (final int packageId : packageIds) {
+                out.writeInt(packageId);
+            }
+            for (final int packageStart : packageStarts) {
+                out.writeInt(packageStart);
+            }
+            for (final int classPackage : classPackages) {
+                out.writeInt(classPackage);
+            }
+            int nameOffset = 0;
+            for (final byte[] name : names) {
+                out.writeInt(nameOffset);
+                nameOffset += name.length;
+            }
+            out.writeInt(nameOffset);
+            for (final Integer id : sorted) {
+                out.writeInt(id);
+            }
+            for (final byte[] name : names) {
+                out.write(name);
+            }
+        }
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    public int packageCount() {
+        return packageCount;
+    }
+
+    public boolean containsClass(String clazz) {
+        return findClass(clazz) >= 0;
+    }
+
+    public Integer getPackage(String clazz) {
+        final int classId = findClass(clazz);
+        return classId >= 0 ? data.getInt(packageIdsOffset + data.getInt(classPackagesOffset + classId * 4) * 4) : null;
+    }
+
+    public Set<String> getClasses(int pkg) {
+        final int packageIndex = findPackage(pkg);
+        if (packageIndex < 0) {
+            return Collections.emptySet();
+        }
+        final int start = data.getInt(packageStartsOffset + packageIndex * 4);
+        final int end = data.getInt(packageStartsOffset + packageIndex * 4 + 4);
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    int next = start;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < end;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        return className(next++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof String clazz)) {
+                    return false;
+                }
+                final int classId = findClass(clazz);
+                return classId >= start && classId < end;
+            }
+        };
+    }
+
+    public NavigableSet<Integer> getPackagesIds() {
+        final NavigableSet<Integer> result = new TreeSet<>();
+        for (int i = 0; i < packageCount; i++) {
+            result.add(data.getInt(packageIdsOffset + i * 4));
+        }
+        return Collections.unmodifiableNavigableSet(result);
+    }
+
+    /**
+     * Reads the whole file into a regular, modifiable {@link ClassOrganizeMap}.
+     */
+    public ClassOrganizeMap toClassOrganizeMap() {
+        final ClassOrganizeMap result = new ClassOrganizeMap(classCount);
+        for (int packageIndex = 0; packageIndex < packageCount; packageIndex++) {
+            final int pkg = data.getInt(packageIdsOffset + packageIndex * 4);
+            final int end = data.getInt(packageStartsOffset + packageIndex * 4 + 4);
+            for (int classId = data.getInt(packageStartsOffset + packageIndex * 4); classId < end; classId++) {
+                result.addClass(className(classId), pkg);
+            }
+        }
+        return result;
+    }
+
+    private String className(int classId) {
+        final int start = data.getInt(nameOffsetsOffset + classId * 4);
+        final int end = data.getInt(nameOffsetsOffset + classId * 4 + 4);
+        final byte[] bytes = new byte[end - start];
+        data.get(namesOffset + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int findClass(String clazz) {
+        final byte[] key = clazz.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = classCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int classId = data.getInt(sortedOffset + mid * 4);
+            final int cmp = compareName(classId, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return classId;
+            }
+        }
+        return -1;
+    }
+
+    private int compareName(int classId, byte[] key) {
+        final int start = namesOffset + data.getInt(nameOffsetsOffset + classId * 4);
+        final int length = namesOffset + data.getInt(nameOffsetsOffset + classId * 4 + 4) - start;
+        final int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            final int cmp = Byte.toUnsignedInt(data.get(start + i)) - Byte.toUnsignedInt(key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private int findPackage(int pkg) {
+        int low = 0;
+        int high = packageCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midPackage = data.getInt(packageIdsOffset + mid * 4);
+            if (midPackage < pkg) {
+                low = mid + 1;
+            } else if (midPackage > pkg) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
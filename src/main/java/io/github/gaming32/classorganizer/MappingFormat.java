@@ -0,0 +1,37 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * Mapping file formats that {@link MappingWriter} can write. Only classes are mapped, since organizing never renames
+ * members.
+ */
+public enum MappingFormat {
+    /**
+     * Tiny v2, as used by Fabric, with the namespaces {@code original} and {@code organized}.
+     */
+    TINY_V2("tiny\t2\t0\toriginal\torganized\n", "c\t", "\t", "\n", '/'),
+    /**
+     * ProGuard's {@code -printmapping} format, with binary names like {@code com.example.Outer$Inner}.
+     */
+    PROGUARD("", "", " -> ", ":\n", '.'),
+    /**
+     * CSRG, as used by SpecialSource.
+     */
+    CSRG("", "", " ", "\n", '/');
+
+    final String header;
+    final String linePrefix;
+    final String separator;
+    final String lineSuffix;
+    /**
+     * What separates the packages of a class name. Class names are stored with {@code /}.
+     */
+    final char packageSeparator;
+
+    MappingFormat(String header, String linePrefix, String separator, String lineSuffix, char packageSeparator) {
+        this.header = header;
+        this.linePrefix = linePrefix;
+        this.separator = separator;
+        this.lineSuffix = lineSuffix;
+        this.packageSeparator = packageSeparator;
+    }
+}
@@ -0,0 +1,200 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Writes the classes of a map as a mapping file, from each class's name to its name in its new package.
+ * <p>
+ * Mappings are streamed straight from the packages of a {@link FrozenClassOrganizeMap}, package by package in id order
+ * and class by class in name order, so the same map always gives the same file. They are encoded into one reused buffer
+ * as they are written, and nothing is allocated per class. Package names are made once per package. Memory use then
+ * only grows with the size of the largest package, for which the simple names already taken are tracked, and with the
+ * classes that keep their names.
+ * <p>
+ * Classes are named by the same routine as {@link JarRepackager} uses, so a mapping file matches the jar repackaged
+ * with the same map. A class keeps its simple name unless another class in its new package already has it, in which
+ * case a number is added to the end. Module descriptors, package descriptors and versioned classes of multi-release
+ * jars aren't mapped, since they aren't moved, but no class is given their names.
+ */
+public final class MappingWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private MappingWriter() {
+    }
+
+    /**
+     * Writes mappings to {@code file}, naming packages with {@link JarRepackager#packageName}.
+     */
+    public static void write(ClassOrganizeMap map, MappingFormat format, Path file) throws IOException {
+        write(map.freeze(), format, JarRepackager::packageName, file);
+    }
+
+    /**
+     * Writes mappings to {@code file}, replacing it if it exists.
+     * @param packageNames The internal name of the package with each id. An empty name is the default package.
+     */
+    public static void write(
+        FrozenClassOrganizeMap map, MappingFormat format, IntFunction<String> packageNames, Path file
+    ) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+            file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            write(map, format, packageNames, channel);
+        }
+    }
+
+    /**
+     * Writes mappings to {@code channel} as UTF-8. The channel isn't closed.
+     * @param packageNames The internal name of the package with each id, called once per package. An empty name is
+     *                     the default package.
+     */
+    public static void write(
+        FrozenClassOrganizeMap map, MappingFormat format, IntFunction<String> packageNames, WritableByteChannel channel
+    ) throws IOException {
+        write(map, format, packageNames, List.of(), channel);
+    }
+
+    /**
+     * Writes mappings to {@code channel} as UTF-8. The channel isn't closed.
+     * @param packageNames The internal name of the package with each id, called once per package. An empty name is
+     *                     the default package.
+     * @param otherClasses Classes that aren't in the map but keep their names, such as the rest of the classes of the
+     *                     jar being repackaged. No class in the map is given one of their
+     *                     names.
+     */
+    public static void write(
+        FrozenClassOrganizeMap map,
+        MappingFormat format,
+        IntFunction<String> packageNames,
+        Collection<String> otherClasses,
+        WritableByteChannel channel
+    ) throws IOException {
+        final Output out = new Output(channel, format.packageSeparator);
+        out.write(format.header, false);
+        final ClassNamer namer = new ClassNamer(map, packageNames, otherClasses);
+        namer.forEach(clazz -> true, (className, packageName, simpleStart, suffix) -> {
+            out.write(format.linePrefix, false);
+            out.write(className, true);
+            out.write(format.separator, false);
+            if (!packageName.isEmpty()) {
+                out.write(packageName, true);
+                out.writeAscii(format.packageSeparator);
+            }
+            out.write(className, simpleStart, className.length(), true);
+            if (suffix != 0) {
+                out.writeAscii('_');
+                out.writeNumber(suffix);
+            }
+            out.write(format.lineSuffix, false);
+        });
+        out.flush();
+    }
+
+    /**
+     * Encodes text as UTF-8 into a buffer, which is written to the channel whenever it fills up.
+     */
+    private static final class Output {
+        // Room for the longest encoding of a character
+        private static final int MAX_CHAR_BYTES = 4;
+
+        private final WritableByteChannel channel;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final char packageSeparator;
+        private int length;
+
+        Output(WritableByteChannel channel, char packageSeparator) {
+            this.channel = channel;
+            this.packageSeparator = packageSeparator;
+        }
+
+        /**
+         * @param internalName Whether {@code text} is an internal name, whose {@code /}s are written as the format's
+         *                     package separator
+         */
+        void write(String text, boolean internalName) throws IOException {
+            write(text, 0, text.length(), internalName);
+        }
+
+        void write(String text, int start, int end, boolean internalName) throws IOException {
+            final byte[] buffer = this.buffer;
+            int length = this.length;
+            for (int i = start; i < end; i++) {
+                if (length > BUFFER_SIZE - MAX_CHAR_BYTES) {
+                    this.length = length;
+                    flush();
+                    length = 0;
+                }
+                final char c = text.charAt(i);
+                if (c < 0x80) {
+                    buffer[length++] = (byte)(internalName && c == '/' ? packageSeparator : c);
+                } else if (c < 0x800) {
+                    buffer[length++] = (byte)(0xc0 | c >> 6);
+                    buffer[length++] = (byte)(0x80 | c & 0x3f);
+                } else if (!Character.isSurrogate(c)) {
+                    buffer[length++] = (byte)(0xe0 | c >> 12);
+                    buffer[length++] = (byte)(0x80 | c >> 6 & 0x3f);
+                    buffer[length++] = (byte)(0x80 | c & 0x3f);
+                } else if (
+                    Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))
+                ) {
+                    final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buffer[length++] = (byte)(0xf0 | codePoint >> 18);
+                    buffer[length++] = (byte)(0x80 | codePoint >> 12 & 0x3f);
+                    buffer[length++] = (byte)(0x80 | codePoint >> 6 & 0x3f);
+                    buffer[length++] = (byte)(0x80 | codePoint & 0x3f);
+                } else {
+                    // Unpaired surrogates can't be encoded, like with String.getBytes
+                    buffer[length++] = '?';
+                }
+            }
+            this.length = length;
+        }
+
+        /**
+         * Writes an ASCII character.
+         */
+        void writeAscii(char c) throws IOException {
+            if (length == BUFFER_SIZE) {
+                flush();
+            }
+            buffer[length++] = (byte)c;
+        }
+
+        /**
+         * Writes a positive number in decimal.
+         */
+        void writeNumber(int value) throws IOException {
+            // Enough for any int
+            if (length > BUFFER_SIZE - 10) {
+                flush();
+            }
+            final int start = length;
+            do {
+                buffer[length++] = (byte)('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // The digits were written backwards
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                final byte digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+        }
+
+        void flush() throws IOException {
+            final ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * Why two classes had to be put in the same package.
+ */
+public enum MergeCause {
+    /**
+     * One class refers to the other, which is package-private.
+     */
+    CLASS_ACCESS,
+    /**
+     * One class refers to a package-private member of the other.
+     */
+    PACKAGE_PRIVATE_MEMBER,
+    /**
+     * One class refers to a protected member of the other without inheriting it.
+     */
+    PROTECTED_MEMBER
+}
@@ -0,0 +1,39 @@
+package io.github.gaming32.classorganizer;
+
+import jdk.jfr.*;
+
+@Name("io.github.gaming32.classorganizer.Organize")
+@Label("Organize")
+@Category("Class Organizer")
+@Description("A complete run of organizing classes into packages")
+@StackTrace(false)
+final class OrganizeEvent extends Event {
+    @Label("Class Count")
+    int classCount;
+
+    @Label("Classes Read")
+    int classesRead;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Class Access Merges")
+    long classAccessMerges;
+
+    @Label("Package-Private Member Merges")
+    long packagePrivateMemberMerges;
+
+    @Label("Protected Member Merges")
+    long protectedMemberMerges;
+
+    @Label("Package Count")
+    int packageCount;
+
+    @Label("Largest Package Size")
+    int largestPackageSize;
+
+    @Label("Bytes Spilled")
+    @DataAmount
+    long spilledBytes;
+}
@@ -0,0 +1,30 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * Receives progress and statistics from {@link ClassOrganizer}. Methods other than {@link #progress} are called on the
+ * thread that runs the organizing, which is the one that started it unless it was started with
+ * {@link ClassOrganizer#organizeAsync}.
+ */
+public interface OrganizeListener {
+    OrganizeListener NONE = new OrganizeListener() {
+    };
+
+    /**
+     * @param nanos The wall time the phase took
+     */
+    default void phaseFinished(OrganizePhase phase, long nanos) {
+    }
+
+    /**
+     * Called as classes are done in phases that go through every class one at a time, such as
+     * {@link OrganizePhase#READ} and {@link OrganizePhase#FIND_EDGES}. This may be called from any thread doing the
+     * work, but never from two at once.
+     * @param done How many classes are done in this phase so far
+     * @param total How many classes there are
+     */
+    default void progress(OrganizePhase phase, int done, int total) {
+    }
+
+    default void finished(OrganizeStats stats) {
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * The steps {@link ClassOrganizer} goes through, in order. Not every run goes through every phase.
+ */
+public enum OrganizePhase {
+    /**
+     * Opening the directory or archive and listing its classes.
+     */
+    OPEN,
+    /**
+     * Loading class summaries saved by a previous incremental run.
+     */
+    LOAD_CACHE,
+    /**
+     * Reading and summarizing class files.
+     */
+    READ,
+    /**
+     * Saving class summaries for the next incremental run.
+     */
+    SAVE_CACHE,
+    /**
+     * Indexing the access of every declared member.
+     */
+    INDEX,
+    /**
+     * Finding which classes must share a package. When streaming, this includes reading classes a second time.
+     */
+    FIND_EDGES,
+    /**
+     * Merging the packages of those classes.
+     */
+    MERGE,
+    /**
+     * Numbering the packages and building the {@link ClassOrganizeMap}.
+     */
+    BUILD_MAP
+}
@@ -0,0 +1,127 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the phases of one organize run, reporting them to an {@link OrganizeListener} and as JFR events.
+ */
+final class OrganizeRecorder {
+    private final OrganizeListener listener;
+    private final OrganizeEvent event = new OrganizeEvent();
+    private final long[] phaseNanos = new long[OrganizePhase.values().length];
+    private final LongAdder classesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final long[] edgeCounts = new long[MergeCause.values().length];
+    private final long[] mergeCounts = new long[MergeCause.values().length];
+    private int classCount;
+    private int classesDone;
+    private int largestPackageSize;
+    private long spilledBytes;
+
+    private OrganizePhase phase;
+    private PhaseEvent phaseEvent;
+    private long phaseStart;
+
+    OrganizeRecorder(OrganizeListener listener) {
+        this.listener = listener;
+        event.begin();
+    }
+
+    void start(OrganizePhase phase) {
+        this.phase = phase;
+        phaseEvent = new PhaseEvent();
+        phaseEvent.begin();
+        phaseStart = System.nanoTime();
+        classesDone = 0;
+    }
+
+    void end() {
+        final long nanos = System.nanoTime() - phaseStart;
+        phaseNanos[phase.ordinal()] += nanos;
+        phaseEvent.end();
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.phase = phase.name();
+            phaseEvent.classCount = classCount;
+            phaseEvent.commit();
+        }
+        listener.phaseFinished(phase, nanos);
+        phase = null;
+        phaseEvent = null;
+    }
+
+    void classCount(int classCount) {
+        this.classCount = classCount;
+    }
+
+    /**
+     * Counts a class file as read. This may be called from multiple threads at once.
+     */
+    void classRead(int length) {
+        classesRead.increment();
+        bytesRead.add(length);
+    }
+
+    /**
+     * Counts classes as done in the current phase, and reports how many are done so far. This may be called from
+     * multiple threads at once, but the listener is only called from one at a time.
+     */
+    synchronized void progress(int classes) {
+        classesDone += classes;
+        listener.progress(phase, classesDone, classCount);
+    }
+
+    void largestPackageSize(int largestPackageSize) {
+        this.largestPackageSize = largestPackageSize;
+    }
+
+    void spilledBytes(long spilledBytes) {
+        this.spilledBytes = spilledBytes;
+    }
+
+    /**
+     * @param edges How many edges were found for {@code cause}
+     * @param merges How many of those joined two packages that weren't already the same
+     */
+    void edges(MergeCause cause, long edges, long merges) {
+        edgeCounts[cause.ordinal()] += edges;
+        mergeCounts[cause.ordinal()] += merges;
+    }
+
+    ClassOrganizeMap finish(ClassOrganizeMap result) {
+        finish(result.packageCount());
+        return result;
+    }
+
+    FrozenClassOrganizeMap finish(FrozenClassOrganizeMap result) {
+        finish(result.packageCount());
+        return result;
+    }
+
+    private void finish(int packageCount) {
+        final OrganizeStats stats = new OrganizeStats(
+            phaseNanos,
+            classCount,
+            classesRead.intValue(),
+            bytesRead.sum(),
+            edgeCounts,
+            mergeCounts,
+            packageCount,
+            largestPackageSize,
+            spilledBytes
+        );
+        event.end();
+        if (event.shouldCommit()) {
+            event.classCount = stats.classCount();
+            event.classesRead = stats.classesRead();
+            event.bytesRead = stats.bytesRead();
+            event.classAccessMerges = stats.mergeCount(MergeCause.CLASS_ACCESS);
+            event.packagePrivateMemberMerges = stats.mergeCount(MergeCause.PACKAGE_PRIVATE_MEMBER);
+            event.protectedMemberMerges = stats.mergeCount(MergeCause.PROTECTED_MEMBER);
+            event.packageCount = stats.packageCount();
+            event.largestPackageSize = stats.largestPackageSize();
+            event.spilledBytes = stats.spilledBytes();
+            event.commit();
+        }
+        listener.finished(stats);
+    }
+}
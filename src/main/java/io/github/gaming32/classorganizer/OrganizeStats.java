@@ -0,0 +1,134 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.Arrays;
+
+/**
+ * Statistics from one run of {@link ClassOrganizer}.
+ */
+public final class OrganizeStats {
+    private final long[] phaseNanos;
+    private final int classCount;
+    private final int classesRead;
+    private final long bytesRead;
+    private final long[] edgeCounts;
+    private final long[] mergeCounts;
+    private final int packageCount;
+    private final int largestPackageSize;
+    private final long spilledBytes;
+
+    OrganizeStats(
+        long[] phaseNanos,
+        int classCount,
+        int classesRead,
+        long bytesRead,
+        long[] edgeCounts,
+        long[] mergeCounts,
+        int packageCount,
+        int largestPackageSize,
+        long spilledBytes
+    ) {
+        this.phaseNanos = phaseNanos.clone();
+        this.classCount = classCount;
+        this.classesRead = classesRead;
+        this.bytesRead = bytesRead;
+        this.edgeCounts = edgeCounts.clone();
+        this.mergeCounts = mergeCounts.clone();
+        this.packageCount = packageCount;
+        this.largestPackageSize = largestPackageSize;
+        this.spilledBytes = spilledBytes;
+    }
+
+    /**
+     * @return The wall time spent in {@code phase}, or {@code 0} if the run didn't go through it
+     */
+    public long phaseNanos(OrganizePhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        return Arrays.stream(phaseNanos).sum();
+    }
+
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * @return How many class files were actually read. Incremental runs skip unchanged classes, and streaming runs
+     * read every class twice.
+     */
+    public int classesRead() {
+        return classesRead;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public double classesReadPerSecond() {
+        return perSecond(classesRead, phaseNanos(OrganizePhase.READ));
+    }
+
+    public double bytesReadPerSecond() {
+        return perSecond(bytesRead, phaseNanos(OrganizePhase.READ));
+    }
+
+    /**
+     * @return How many pairs of classes had to share a package for this reason. A pair can be counted under more
+     * than one cause, and most pairs are already in the same package by the time they're merged, so this is usually
+     * much more than {@link #mergeCount}.
+     */
+    public long edgeCount(MergeCause cause) {
+        return edgeCounts[cause.ordinal()];
+    }
+
+    /**
+     * @return How many times two packages were merged into one for this reason. Every merge leaves one package fewer,
+     * so over all causes these add up to {@link #classCount} minus {@link #packageCount}. Edges are applied in
+     * parallel, so which cause a merge is counted under can differ between runs when more than one would have made it.
+     */
+    public long mergeCount(MergeCause cause) {
+        return mergeCounts[cause.ordinal()];
+    }
+
+    public int packageCount() {
+        return packageCount;
+    }
+
+    public int largestPackageSize() {
+        return largestPackageSize;
+    }
+
+    /**
+     * @return How many bytes of edges a streaming run wrote to disk
+     */
+    public long spilledBytes() {
+        return spilledBytes;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("OrganizeStats{");
+        for (final OrganizePhase phase : OrganizePhase.values()) {
+            if (phaseNanos(phase) != 0) {
+                result.append(phase).append('=').append(phaseNanos(phase) / 1_000_000).append("ms, ");
+            }
+        }
+        result.append("classes=").append(classCount)
+            .append(", classesRead=").append(classesRead)
+            .append(", bytesRead=").append(bytesRead);
+        for (final MergeCause cause : MergeCause.values()) {
+            result.append(", ").append(cause).append('=').append(mergeCount(cause)).append(" merges/")
+                .append(edgeCount(cause)).append(" edges");
+        }
+        return result.append(", packages=").append(packageCount)
+            .append(", largestPackage=").append(largestPackageSize)
+            .append(", spilledBytes=").append(spilledBytes)
+            .append('}')
+            .toString();
+    }
+}
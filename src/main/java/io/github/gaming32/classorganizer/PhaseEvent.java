@@ -0,0 +1,16 @@
+package io.github.gaming32.classorganizer;
+
+import jdk.jfr.*;
+
+@Name("io.github.gaming32.classorganizer.Phase")
+@Label("Organize Phase")
+@Category("Class Organizer")
+@Description("One phase of organizing classes into packages")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Class Count")
+    int classCount;
+}
@@ -0,0 +1,28 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * How {@link ClassOrganizer} reads class files. Both engines find exactly the same references.
+ */
+public enum ScanEngine {
+    /**
+     * Visits the whole class file, including every instruction, with ASM.
+     */
+    ASM {
+        @Override
+        ClassSummary summarize(byte[] classFile) {
+            return ClassSummary.read(classFile);
+        }
+    },
+    /**
+     * Reads the class file directly, only decoding the parts that name classes and the operands of instructions that
+     * refer to the constant pool. This is faster, since nothing is allocated for each instruction.
+     */
+    CONSTANT_POOL {
+        @Override
+        ClassSummary summarize(byte[] classFile) {
+            return ConstantPoolScanner.scan(classFile);
+        }
+    };
+
+    abstract ClassSummary summarize(byte[] classFile);
+}
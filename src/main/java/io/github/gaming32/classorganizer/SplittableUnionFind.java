@@ -0,0 +1,111 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Disjoint-set forest that can list the members of a set and split it back into singletons, for {@link ClassWatcher}.
+ * A union-find can't undo a union, so when an edge goes away the sets it may have joined are split up and joined
+ * again from their remaining edges. Every other set is left alone.
+ * <p>
+ * The members of each set are linked into a ring through {@code next}, and joining two sets splices their rings.
+ * Each set is labelled with its smallest member, which doesn't depend on how it was joined, so sets that aren't
+ * touched keep their label from one update to the next.
+ * <p>
+ * This isn't thread-safe. Even {@link #find} compresses paths.
+ */
+final class SplittableUnionFind {
+    private int[] parent = new int[0];
+    private int[] size = new int[0];
+    private int[] next = new int[0];
+    private int[] label = new int[0];
+
+    /**
+     * Makes sure ids up to {@code capacity} can be used. New ids start out as singletons.
+     */
+    void ensureCapacity(int capacity) {
+        final int oldCapacity = parent.length;
+        if (capacity <= oldCapacity) return;
+        capacity = Math.max(capacity, oldCapacity * 2);
+        parent = Arrays.copyOf(parent, capacity);
+        size = Arrays.copyOf(size, capacity);
+        next = Arrays.copyOf(next, capacity);
+        label = Arrays.copyOf(label, capacity);
+        for (int id = oldCapacity; id < capacity; id++) {
+            makeSingleton(id);
+        }
+    }
+
+    private void makeSingleton(int id) {
+        parent[id] = id;
+        size[id] = 1;
+        next[id] = id;
+        label[id] = id;
+    }
+
+    int find(int id) {
+        int root = id;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[id] != root) {
+            final int p = parent[id];
+            parent[id] = root;
+            id = p;
+        }
+        return root;
+    }
+
+    /**
+     * @return The smallest member of the set with root {@code root}
+     */
+    int label(int root) {
+        return label[root];
+    }
+
+    int size(int root) {
+        return size[root];
+    }
+
+    /**
+     * Joins the sets with roots {@code a} and {@code b}, which must be different.
+     * @return The root of the joined set
+     */
+    int link(int a, int b) {
+        if (size[a] < size[b]) {
+            final int temp = a;
+            a = b;
+            b = temp;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+        label[a] = Math.min(label[a], label[b]);
+        final int temp = next[a];
+        next[a] = next[b];
+        next[b] = temp;
+        return a;
+    }
+
+    /**
+     * Passes every member of the set with root {@code root} to {@code action}.
+     */
+    void forEachMember(int root, IntConsumer action) {
+        int id = root;
+        do {
+            // The action may split the set, so step ahead first
+            final int current = id;
+            id = next[id];
+            action.accept(current);
+        } while (id != root);
+    }
+
+    /**
+     * Splits the set with root {@code root} into singletons, passing each of its members to {@code action}.
+     */
+    void split(int root, IntConsumer action) {
+        forEachMember(root, id -> {
+            makeSingleton(id);
+            action.accept(id);
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.gaming32.classorganizer;
+
+import java.nio.file.Path;
+
+/**
+ * Limits for {@link ClassOrganizer#organizeStreaming}.
+ * @param batchSize How many classes are read and summarized at once
+ * @param edgeBudget How many bytes of edges to keep in memory before spilling them to disk
+ * @param spillDirectory Where to put the spill file, or {@code null} for the default temporary directory
+ */
+public record StreamingOptions(int batchSize, long edgeBudget, Path spillDirectory) {
+    public static final StreamingOptions DEFAULT = new StreamingOptions(4096, 64L << 20, null);
+
+    public StreamingOptions {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (edgeBudget < 0) {
+            throw new IllegalArgumentException("edgeBudget must not be negative");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.gaming32.classorganizer;
+
+/**
+ * Open-addressing {@code String -> int} hash map with linear probing. Missing keys map to {@code -1}.
+ */
+final class StringIntMap {
+    private String[] keys;
+    private int[] values;
+    private int size;
+
+    StringIntMap() {
+        this(16);
+    }
+
+    StringIntMap(int expectedSize) {
+        final int capacity = IntIntMap.tableSizeFor(expectedSize);
+        keys = new String[capacity];
+        values = new int[capacity];
+    }
+
+    StringIntMap(StringIntMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(String key) {
+        final int mask = keys.length - 1;
+        int slot = IntIntMap.mix(key.hashCode()) & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (existing.equals(key)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Like {@link #get(String)}, for the characters of {@code source} from {@code start} (inclusive) to {@code end}
+     * (exclusive), without creating a string for them.
+     */
+    int get(String source, int start, int end) {
+        // Same as String.hashCode, so that this finds keys put as whole strings
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        final int length = end - start;
+        final int mask = keys.length - 1;
+        int slot = IntIntMap.mix(hash) & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (existing.length() == length && existing.regionMatches(0, source, start, length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    void put(String key, int value) {
+        final int mask = keys.length - 1;
+        int slot = IntIntMap.mix(key.hashCode()) & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (existing.equals(key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length >> 1) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void rehash(int capacity) {
+        final String[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != null) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.BitSet;
+
+/**
+ * Accumulates the contents of a {@link ClassSummary}. Shared by the engines that read class files.
+ */
+final class SummaryBuilder {
+    private static final int CHECKED_DESCRIPTOR = 1;
+    private static final int CHECKED_SIGNATURE = 2;
+
+    private final SymbolTable strings;
+    private final IntList members = new IntList(32);
+    private final IntList memberAccess = new IntList(16);
+    private final BitSet classReferences = new BitSet();
+    private final IntTripleMap memberReferenceSet = new IntTripleMap(32);
+    private final IntList memberReferences = new IntList(96);
+    /**
+     * Descriptors and signatures that were already checked, since the same ones are usually used many times in a
+     * class
+     */
+    private final StringIntMap checked = new StringIntMap(32);
+
+    SummaryBuilder() {
+        this(64);
+    }
+
+    SummaryBuilder(int expectedStrings) {
+        strings = new SymbolTable(expectedStrings);
+    }
+
+    int intern(String string) {
+        return strings.intern(string);
+    }
+
+    ClassSummary toSummary(int access, String superName, String[] interfaces) {
+        return new ClassSummary(
+            strings.toArray(),
+            access,
+            superName,
+            interfaces,
+            members.toArray(),
+            memberAccess.toArray(),
+            classReferences.stream().toArray(),
+            memberReferences.toArray()
+        );
+    }
+
+    void addMember(int access, String name, String descriptor) {
+        addMember(access, strings.intern(name), strings.intern(descriptor));
+    }
+
+    /**
+     * Like {@link #addMember(int, String, String)}, with already {@linkplain #intern interned} strings.
+     */
+    void addMember(int access, int name, int descriptor) {
+        members.add(name);
+        members.add(descriptor);
+        memberAccess.add(access);
+    }
+
+    void checkMember(String owner, String name, String descriptor) {
+        checkMember(strings.intern(owner), strings.intern(name), strings.intern(descriptor));
+    }
+
+    /**
+     * Like {@link #checkMember(String, String, String)}, with already {@linkplain #intern interned} strings.
+     */
+    void checkMember(int owner, int name, int descriptor) {
+        if (memberReferenceSet.put(owner, name, descriptor, 0) < 0) {
+            memberReferences.add(owner);
+            memberReferences.add(name);
+            memberReferences.add(descriptor);
+        }
+    }
+
+    /**
+     * @param name An internal name. Like ASM's {@code visitTypeInsn}, array types that appear where an internal name
+     *             is expected are kept as they are, so they don't refer to their element class.
+     */
+    void checkClass(String name) {
+        classReferences.set(strings.intern(name));
+    }
+
+    /**
+     * Like {@link #checkClass(String)}, with an already {@linkplain #intern interned} name.
+     */
+    void checkClass(int name) {
+        classReferences.set(name);
+    }
+
+    /**
+     * Checks a reference to an enum constant in an annotation.
+     * @param descriptor The descriptor of the enum class
+     */
+    void checkEnumConstant(String descriptor, String name) {
+        final int length = descriptor.length();
+        final int owner = length > 1 && descriptor.charAt(0) == 'L'
+            ? strings.intern(descriptor, 1, length - 1)
+            : strings.intern(descriptor);
+        checkMember(owner, strings.intern(name), strings.intern(descriptor));
+    }
+
+    /**
+     * Checks every class named in a field or method descriptor. Class names are only copied out of the descriptor
+     * the first time they are seen.
+     */
+    void checkDescriptor(String descriptor) {
+        if (!markChecked(descriptor, CHECKED_DESCRIPTOR)) return;
+        final int length = descriptor.length();
+        int i = 0;
+        while (i < length) {
+            if (descriptor.charAt(i++) != 'L') continue;
+            final int end = descriptor.indexOf(';', i);
+            if (end < 0) return;
+            classReferences.set(strings.intern(descriptor, i, end));
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Checks the outermost class of every class type in a generic signature, like ASM's
+     * {@code SignatureVisitor.visitClassType}.
+     */
+    void checkSignature(String signature) {
+        if (!markChecked(signature, CHECKED_SIGNATURE)) return;
+        final int length = signature.length();
+        int pos = 0;
+        if (pos < length && signature.charAt(pos) == '<') {
+            pos++;
+            while (signature.charAt(pos) != '>') {
+                pos = signature.indexOf(':', pos) + 1;
+                final char c = signature.charAt(pos);
+                if (c == 'L' || c == '[' || c == 'T') {
+                    pos = checkSignatureType(signature, pos);
+                }
+                while (signature.charAt(pos) == ':') {
+                    pos = checkSignatureType(signature, pos + 1);
+                }
+            }
+            pos++;
+        }
+        if (pos < length && signature.charAt(pos) == '(') {
+            pos++;
+            while (signature.charAt(pos) != ')') {
+                pos = checkSignatureType(signature, pos);
+            }
+            pos = checkSignatureType(signature, pos + 1);
+            while (pos < length && signature.charAt(pos) == '^') {
+                pos = checkSignatureType(signature, pos + 1);
+            }
+        } else {
+            while (pos < length) {
+                pos = checkSignatureType(signature, pos);
+            }
+        }
+    }
+
+    /**
+     * @return The offset after the type
+     */
+    private int checkSignatureType(String signature, int pos) {
+        switch (signature.charAt(pos)) {
+            case '[' -> {
+                return checkSignatureType(signature, pos + 1);
+            }
+            case 'T' -> {
+                return signature.indexOf(';', pos) + 1;
+            }
+            case 'L' -> {
+                int start = ++pos;
+                boolean inner = false;
+                boolean visited = false;
+                while (true) {
+                    final char c = signature.charAt(pos++);
+                    if (c == '.' || c == ';') {
+                        if (!visited && !inner) {
+                            classReferences.set(strings.intern(signature, start, pos - 1));
+                        }
+                        if (c == ';') {
+                            return pos;
+                        }
+                        start = pos;
+                        inner = true;
+                        visited = false;
+                    } else if (c == '<') {
+                        if (!inner) {
+                            classReferences.set(strings.intern(signature, start, pos - 1));
+                        }
+                        visited = true;
+                        char argument;
+                        while ((argument = signature.charAt(pos)) != '>') {
+                            if (argument == '*') {
+                                pos++;
+                            } else if (argument == '+' || argument == '-') {
+                                pos = checkSignatureType(signature, pos + 1);
+                            } else {
+                                pos = checkSignatureType(signature, pos);
+                            }
+                        }
+                        pos++;
+                    }
+                }
+            }
+            default -> {
+                return pos + 1;
+            }
+        }
+    }
+
+    /**
+     * @return Whether {@code text} wasn't checked as {@code kind} before
+     */
+    private boolean markChecked(String text, int kind) {
+        final int kinds = Math.max(checked.get(text), 0);
+        if ((kinds & kind) != 0) {
+            return false;
+        }
+        checked.put(text, kinds | kind);
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class summaries persisted between runs. Each entry is keyed by class name and remembers the stamp and content hash
+ * of the class file it was made from.
+ * <p>
+ * Names and descriptors are shared between many classes, so the file starts with a table of every distinct string,
+ * and summaries refer to strings by their index in it.
+ */
+final class SummaryCache {
+    private static final int MAGIC = 0x434f5343; // COSC
+    private static final int VERSION = 4;
+
+    record Entry(long stamp, byte[] hash, ClassSummary summary) {
+        boolean matches(byte[] otherHash) {
+            return Arrays.equals(hash, otherHash);
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    private SummaryCache(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Loads a cache file. A missing, outdated, corrupt or unreadable file gives an empty cache, so every class is read
+     * again.
+     */
+    static SummaryCache load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return new SummaryCache(new HashMap<>());
+            }
+            final String[] table = new String[ClassSummary.readLength(in)];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = in.readUTF();
+            }
+            final int count = ClassSummary.readLength(in);
+            final Map<String, Entry> entries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final String name = ClassSummary.lookup(table, ClassSummary.readVarInt(in));
+                final long stamp = in.readLong();
+                final byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                entries.put(name, new Entry(stamp, hash, ClassSummary.readFrom(in, table)));
+            }
+            return new SummaryCache(entries);
+        } catch (IOException | RuntimeException e) {
+            return new SummaryCache(new HashMap<>());
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Entry get(String className) {
+        return entries.get(className);
+    }
+
+    /**
+     * Writes the entries for {@code classNames} to {@code file}, replacing it atomically. Classes without an entry in
+     * {@code entries} are left out.
+     */
+    static void save(Path file, String[] classNames, Entry[] entries) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                final SymbolTable table = new SymbolTable(classNames.length * 8);
+                int count = 0;
+                for (int i = 0; i < classNames.length; i++) {
+                    if (entries[i] == null) continue;
+                    table.intern(classNames[i]);
+                    entries[i].summary().internStrings(table);
+                    count++;
+                }
+                ClassSummary.writeVarInt(out, table.size());
+                for (int i = 0; i < table.size(); i++) {
+                    out.writeUTF(table.symbol(i));
+                }
+                ClassSummary.writeVarInt(out, count);
+                for (int i = 0; i < classNames.length; i++) {
+                    final Entry entry = entries[i];
+                    if (entry == null) continue;
+                    ClassSummary.writeVarInt(out, table.get(classNames[i]));
+                    out.writeLong(entry.stamp());
+                    out.writeByte(entry.hash().length);
+                    out.write(entry.hash());
+                    entry.summary().writeTo(out, table);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static byte[] hash(byte[] classFile) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(classFile);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.gaming32.classorganizer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Summaries of class files by the SHA-256 hash of their content, shared between runs in the same JVM. A class file
+ * that appears more than once, like an unchanged class in many versions of a jar, is only summarized the first time.
+ * <p>
+ * Summaries aren't kept by {@linkplain ClassSource#stamp stamp}. A stamp only tells apart versions of a class in the
+ * same source, and two sources can have different classes with the same name and stamp, like directories extracted
+ * with normalized modification times.
+ */
+final class SummaryPool {
+    private final ScanEngine engine;
+    private final ConcurrentHashMap<ByteBuffer, ClassSummary> byHash = new ConcurrentHashMap<>();
+
+    SummaryPool(ScanEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Summarizes a class file, or returns the summary of an identical one. This may be called from multiple threads
+     * at once.
+     */
+    ClassSummary summarize(byte[] classFile) {
+        final ByteBuffer key = ByteBuffer.wrap(SummaryCache.hash(classFile));
+        ClassSummary summary = byHash.get(key);
+        if (summary == null) {
+            // Two threads may summarize the same class at once. Either result is fine, since they're equal.
+            final ClassSummary created = engine.summarize(classFile);
+            summary = byHash.putIfAbsent(key, created);
+            if (summary == null) {
+                summary = created;
+            }
+        }
+        return summary;
+    }
+}
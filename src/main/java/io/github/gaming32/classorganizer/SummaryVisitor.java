@@ -0,0 +1,261 @@
+package io.github.gaming32.classorganizer;
+
+import org.objectweb.asm.*;
+
+/**
+ * Collects a {@link ClassSummary} from a single pass over a class file.
+ */
+final class SummaryVisitor extends ClassVisitor {
+    private final SummaryBuilder builder = new SummaryBuilder();
+    private int access;
+    private String superName;
+    private String[] interfaces;
+
+    // None of these keep any state of their own, so one of each is shared by every part of the class they visit
+    private final AnnotationVisitor annotationChecker = new AnnotationVisitor(Opcodes.ASM9) {
+        @Override
+        public void visit(String name, Object value) {
+            checkObject(value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            checkDescriptor(descriptor);
+            return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            return this;
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            builder.checkEnumConstant(descriptor, value);
+        }
+    };
+
+    private final FieldVisitor fieldChecker = new FieldVisitor(Opcodes.ASM9) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+    };
+
+    private final MethodVisitor methodChecker = new MethodVisitor(Opcodes.ASM9) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            checkMember(owner, name, descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
+            checkDescriptor(descriptor);
+            checkSignature(signature);
+        }
+
+        @Override
+        public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start, Label[] end, int[] index, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+            checkDescriptor(descriptor);
+            checkObject(bootstrapMethodHandle);
+            for (final Object arg : bootstrapMethodArguments) {
+                checkObject(arg);
+            }
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            checkObject(value);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            checkMember(owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            checkDescriptor(descriptor);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            if (type != null) {
+                checkClass(type);
+            }
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            checkClass(type);
+        }
+    };
+
+    private final RecordComponentVisitor recordComponentChecker = new RecordComponentVisitor(Opcodes.ASM9) {
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+            return checkAnnotation(descriptor);
+        }
+    };
+
+    SummaryVisitor() {
+        super(Opcodes.ASM9);
+    }
+
+    ClassSummary toSummary() {
+        return builder.toSummary(access, superName, interfaces);
+    }
+
+    private void addMember(int access, String name, String descriptor) {
+        builder.addMember(access, name, descriptor);
+    }
+
+    private void checkMember(String owner, String name, String descriptor) {
+        builder.checkMember(owner, name, descriptor);
+    }
+
+    private void checkClass(String name) {
+        builder.checkClass(name);
+    }
+
+    private void checkDescriptor(String descriptor) {
+        builder.checkDescriptor(descriptor);
+    }
+
+    private void checkSignature(String signature) {
+        if (signature == null) return;
+        builder.checkSignature(signature);
+    }
+
+    private void checkType(Type type) {
+        if (type.getSort() == Type.OBJECT) {
+            checkClass(type.getInternalName());
+        } else if (type.getSort() == Type.ARRAY || type.getSort() == Type.METHOD) {
+            checkDescriptor(type.getDescriptor());
+        }
+    }
+
+    private AnnotationVisitor checkAnnotation(String descriptor) {
+        checkDescriptor(descriptor);
+        return annotationChecker;
+    }
+
+    private void checkObject(Object value) {
+        if (value instanceof Handle handle) {
+            checkMember(handle.getOwner(), handle.getName(), handle.getDesc());
+        } else if (value instanceof ConstantDynamic condy) {
+            checkDescriptor(condy.getDescriptor());
+            checkObject(condy.getBootstrapMethod());
+            for (int i = 0; i < condy.getBootstrapMethodArgumentCount(); i++) {
+                checkObject(condy.getBootstrapMethodArgument(i));
+            }
+        } else if (value instanceof Type type) {
+            checkType(type);
+        }
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces != null ? interfaces : new String[0];
+        checkSignature(signature);
+        if (superName != null) {
+            checkClass(superName);
+        }
+        if (interfaces != null) {
+            for (final String intf : interfaces) {
+                checkClass(intf);
+            }
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        return checkAnnotation(descriptor);
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        checkClass(name);
+        if (outerName != null) {
+            checkClass(outerName);
+        }
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        return checkAnnotation(descriptor);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+        addMember(access, name, descriptor);
+        checkDescriptor(descriptor);
+        checkSignature(signature);
+        if (value != null) {
+            checkObject(value);
+        }
+        return fieldChecker;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        addMember(access, name, descriptor);
+        checkDescriptor(descriptor);
+        checkSignature(signature);
+        if (exceptions != null) {
+            for (final String exc : exceptions) {
+                checkClass(exc);
+            }
+        }
+        return methodChecker;
+    }
+
+    @Override
+    public RecordComponentVisitor visitRecordComponent(String name, String descriptor, String signature) {
+        checkDescriptor(descriptor);
+        checkSignature(signature);
+        return recordComponentChecker;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.gaming32.classorganizer;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings to dense int ids, starting from 0.
+ */
+final class SymbolTable {
+    private final StringIntMap ids;
+    private String[] symbols;
+    private int size;
+
+    SymbolTable() {
+        this(16);
+    }
+
+    SymbolTable(int expectedSize) {
+        ids = new StringIntMap(expectedSize);
+        symbols = new String[Math.max(expectedSize, 16)];
+    }
+
+    int intern(String symbol) {
+        final int existing = ids.get(symbol);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size << 1);
+        }
+        symbols[size] = symbol;
+        ids.put(symbol, size);
+        return size++;
+    }
+
+    /**
+     * Interns the characters of {@code source} from {@code start} (inclusive) to {@code end} (exclusive). A string is
+     * only created for them if they weren't interned before.
+     */
+    int intern(String source, int start, int end) {
+        final int existing = ids.get(source, start, end);
+        return existing >= 0 ? existing : intern(source.substring(start, end));
+    }
+
+    /**
+     * @return The id of {@code symbol}, or {@code -1} if it was never interned
+     */
+    int get(String symbol) {
+        return ids.get(symbol);
+    }
+
+    String symbol(int id) {
+        return symbols[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    String[] toArray() {
+        return Arrays.copyOf(symbols, size);
+    }
+}
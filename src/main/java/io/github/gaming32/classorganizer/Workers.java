@@ -0,0 +1,283 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the parallel steps of an organize run on an {@link Executor}, and stops them once the run is cancelled.
+ * <p>
+ * The thread that starts a step works on it too, and only ever waits for work that another thread has already
+ * started. Tasks that are still queued in the executor when a step finishes find nothing left to do. A step never
+ * waits on tasks stuck behind it in the executor's queue, so this can't deadlock on a bounded or single-threaded
+ * executor, even if the step itself was started on it.
+ */
+final class Workers {
+    static final Workers COMMON = new Workers(ForkJoinPool.commonPool(), () -> false);
+
+    private final Executor executor;
+    private final BooleanSupplier cancelled;
+    private final int helpers;
+
+    /**
+     * @param cancelled Checked between chunks of work. Once it returns {@code true}, steps fail with a
+     *                  {@link CancellationException}.
+     */
+    Workers(Executor executor, BooleanSupplier cancelled) {
+        this.executor = executor;
+        this.cancelled = cancelled;
+        final int parallelism = executor instanceof ForkJoinPool pool
+            ? pool.getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        helpers = Math.max(parallelism - 1, 0);
+    }
+
+    void checkCancelled() {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+    }
+
+    interface Chunk {
+        /**
+         * @param start The first index of the chunk
+         * @param end The index after the last
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * Runs {@code chunk} over {@code 0} to {@code count} in parallel, {@code chunkSize} indices at a time, and waits
+     * for every chunk to finish. Once a chunk fails, the chunks that haven't started are skipped and the failure is
+     * rethrown.
+     */
+    void forEach(int count, int chunkSize, Chunk chunk) {
+        checkCancelled();
+        final int chunkCount = (count + chunkSize - 1) / chunkSize;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(chunkCount);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Runnable work = () -> {
+            int i;
+            while ((i = nextChunk.getAndIncrement()) < chunkCount) {
+                try {
+                    if (failure.get() == null) {
+                        checkCancelled();
+                        chunk.run(i * chunkSize, Math.min((i + 1) * chunkSize, count));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = Math.min(helpers, chunkCount - 1); i > 0; i--) {
+            try {
+                executor.execute(work);
+            } catch (RejectedExecutionException e) {
+                // This thread does the work instead
+                break;
+            }
+        }
+        work.run();
+        // Every chunk has been started by now, so this only waits on threads that are working
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        final Throwable t = failure.get();
+        if (t instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (t instanceof Error error) {
+            throw error;
+        }
+    }
+
+    /**
+     * Creates a pipeline whose stages run on the executor as their inputs become available.
+     * @param maxPending How many stages may be waiting for their input or running at once
+     */
+    Pipeline pipeline(int maxPending) {
+        return new Pipeline(maxPending);
+    }
+
+    /**
+     * Stages that run on the executor once their input, such as a read, completes. Stages are started with
+     * {@link #submit} and waited for with {@link #finish}, both from the thread that created the pipeline. While that
+     * thread waits, it runs stages whose input is ready itself, and the tasks inputs were started with.
+     * <p>
+     * Once the run is cancelled, inputs that haven't completed are failed, so their tasks do nothing if they run.
+     */
+    final class Pipeline {
+        // How often a waiting owner checks whether the run was cancelled, since nothing wakes it up when it is
+        private static final long CANCEL_POLL_NANOS = 10_000_000;
+
+        private final Thread owner = Thread.currentThread();
+        private final Semaphore pending;
+        private final ConcurrentLinkedQueue<Runnable> ready = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Runnable> inputTasks = new ConcurrentLinkedQueue<>();
+        private final Set<CompletableFuture<?>> inputs = ConcurrentHashMap.newKeySet();
+        private final Executor inputExecutor = this::executeInput;
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private int submitted;
+        private boolean interrupted;
+
+        private Pipeline(int maxPending) {
+            pending = new Semaphore(maxPending);
+        }
+
+        /**
+         * @return Whether a stage has failed or the run was cancelled, so submitting more is pointless
+         */
+        boolean failed() {
+            return failure.get() != null || cancelled.getAsBoolean();
+        }
+
+        /**
+         * Runs {@code stage} with the result of {@code input} once it completes. This waits while too many stages are
+         * pending.
+         * @param input Starts the input. It's only called once there is room for the stage. Any work it does on
+         *              threads it doesn't own should go to the executor it's given, which runs on the workers'
+         *              executor and stops once the run is cancelled.
+         */
+        <T> void submit(Function<Executor, CompletableFuture<T>> input, Consumer<T> stage) {
+            while (!pending.tryAcquire()) {
+                helpOrWait();
+            }
+            submitted++;
+            final CompletableFuture<T> future;
+            try {
+                future = input.apply(inputExecutor);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                stageFinished();
+                return;
+            }
+            inputs.add(future);
+            future.whenComplete((value, e) -> {
+                inputs.remove(future);
+                ready.add(() -> {
+                    try {
+                        if (e != null) {
+                            throw e;
+                        }
+                        if (failure.get() == null) {
+                            checkCancelled();
+                            stage.accept(value);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t instanceof CompletionException ? t.getCause() : t);
+                    } finally {
+                        stageFinished();
+                    }
+                });
+                try {
+                    executor.execute(this::runReady);
+                } catch (RejectedExecutionException rejected) {
+                    // The owner runs it instead
+                }
+                LockSupport.unpark(owner);
+            });
+        }
+
+        /**
+         * Waits for every submitted stage to finish, and rethrows the first failure.
+         */
+        void finish() throws IOException {
+            while (finished.get() < submitted) {
+                helpOrWait();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            rethrow(failure.get());
+            checkCancelled();
+        }
+
+        private void stageFinished() {
+            pending.release();
+            finished.incrementAndGet();
+            LockSupport.unpark(owner);
+        }
+
+        private void runReady() {
+            final Runnable stage = ready.poll();
+            if (stage != null) {
+                stage.run();
+            }
+        }
+
+        private void executeInput(Runnable task) {
+            inputTasks.add(task);
+            try {
+                executor.execute(this::runInput);
+            } catch (RejectedExecutionException e) {
+                // The owner runs it instead
+            }
+            LockSupport.unpark(owner);
+        }
+
+        private void runInput() {
+            final Runnable task = inputTasks.poll();
+            if (task != null) {
+                task.run();
+            }
+        }
+
+        private void helpOrWait() {
+            if (cancelled.getAsBoolean()) {
+                // The stages of these fail once they run, since the run is cancelled
+                for (final CompletableFuture<?> input : inputs) {
+                    input.completeExceptionally(new CancellationException());
+                }
+            }
+            Runnable task = ready.poll();
+            if (task == null) {
+                task = inputTasks.poll();
+            }
+            if (task != null) {
+                task.run();
+                return;
+            }
+            // Woken up whenever a stage becomes ready or finishes, or an input task is queued. The caller checks
+            // again either way.
+            LockSupport.parkNanos(this, CANCEL_POLL_NANOS);
+            interrupted |= Thread.interrupted();
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) return;
+        if (failure instanceof UncheckedIOException io) {
+            throw io.getCause();
+        }
+        if (failure instanceof IOException io) {
+            throw io;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        throw new IllegalStateException(failure);
+    }
+}
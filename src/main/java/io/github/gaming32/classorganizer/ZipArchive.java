@@ -0,0 +1,227 @@
+package io.github.gaming32.classorganizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A memory-mapped zip archive whose central directory has been read once. Entries can be read concurrently, either
+ * inflated or as the raw bytes stored in the archive.
+ */
+final class ZipArchive {
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int CENTRAL_SIGNATURE = 0x02014b50;
+    static final int LOCAL_SIGNATURE = 0x04034b50;
+    static final int END_SIZE = 22;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+    static final int ENCRYPTED_FLAG = 1;
+
+    private final ByteBuffer data;
+    private final String[] names;
+    private final int[] flags;
+    private final int[] methods;
+    private final int[] times;
+    private final int[] crcs;
+    private final int[] compressedSizes;
+    private final long[] sizes;
+    private final int[] localHeaderOffsets;
+
+    ZipArchive(Path archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException(archive + " is too large to map");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final int end = findEnd();
+        long entryCount = data.getShort(end + 10) & 0xffff;
+        long centralOffset = data.getInt(end + 16) & 0xffffffffL;
+        if (entryCount == 0xffff || centralOffset == 0xffffffffL) {
+            final int locator = end - 20;
+            if (locator >= 0 && data.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                final int zip64End = checkedOffset(data.getLong(locator + 8));
+                if (data.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid zip64 end of central directory");
+                }
+                entryCount = data.getLong(zip64End + 32);
+                centralOffset = data.getLong(zip64End + 48);
+            }
+        }
+        // Every entry takes at least a central header, so this also bounds a corrupt count
+        if (entryCount < 0 || entryCount > data.capacity() / CENTRAL_HEADER_SIZE) {
+            throw new ZipException("Invalid entry count " + entryCount);
+        }
+
+        final int count = (int)entryCount;
+        names = new String[count];
+        flags = new int[count];
+        methods = new int[count];
+        times = new int[count];
+        crcs = new int[count];
+        compressedSizes = new int[count];
+        sizes = new long[count];
+        localHeaderOffsets = new int[count];
+        int pos = checkedOffset(centralOffset);
+        for (int i = 0; i < count; i++) {
+            if (data.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry at " + pos);
+            }
+            long compressedSize = data.getInt(pos + 20) & 0xffffffffL;
+            long size = data.getInt(pos + 24) & 0xffffffffL;
+            final int nameLength = data.getShort(pos + 28) & 0xffff;
+            final int extraLength = data.getShort(pos + 30) & 0xffff;
+            final int commentLength = data.getShort(pos + 32) & 0xffff;
+            long localOffset = data.getInt(pos + 42) & 0xffffffffL;
+
+            if (size == 0xffffffffL || compressedSize == 0xffffffffL || localOffset == 0xffffffffL) {
+                int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+                final int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    final int tag = data.getShort(extra) & 0xffff;
+                    final int length = data.getShort(extra + 2) & 0xffff;
+                    if (tag == 0x0001) {
+                        int field = extra + 4;
+                        if (size == 0xffffffffL) {
+                            size = data.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xffffffffL) {
+                            compressedSize = data.getLong(field);
+                            field += 8;
+                        }
+                        if (localOffset == 0xffffffffL) {
+                            localOffset = data.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+
+            names[i] = readString(pos + CENTRAL_HEADER_SIZE, nameLength);
+            flags[i] = data.getShort(pos + 8) & 0xffff;
+            methods[i] = data.getShort(pos + 10) & 0xffff;
+            times[i] = data.getInt(pos + 12);
+            crcs[i] = data.getInt(pos + 16);
+            compressedSizes[i] = checkedOffset(compressedSize);
+            sizes[i] = size;
+            localHeaderOffsets[i] = checkedOffset(localOffset);
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    int entryCount() {
+        return names.length;
+    }
+
+    String name(int entry) {
+        return names[entry];
+    }
+
+    int flags(int entry) {
+        return flags[entry];
+    }
+
+    int method(int entry) {
+        return methods[entry];
+    }
+
+    /**
+     * @return The modification time and date of an entry, in MS-DOS format, as stored in the archive
+     */
+    int time(int entry) {
+        return times[entry];
+    }
+
+    int crc(int entry) {
+        return crcs[entry];
+    }
+
+    long size(int entry) {
+        return sizes[entry];
+    }
+
+    /**
+     * @return The data of an entry as it is stored in the archive, without inflating it
+     */
+    ByteBuffer rawData(int entry) throws ZipException {
+        final int header = localHeaderOffsets[entry];
+        if (data.getInt(header) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + names[entry]);
+        }
+        final int start = header + LOCAL_HEADER_SIZE + (data.getShort(header + 26) & 0xffff) + (data.getShort(header + 28) & 0xffff);
+        checkedOffset((long)start + compressedSizes[entry]);
+        return data.slice(start, compressedSizes[entry]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads and inflates an entry. The entry must be stored or deflated, and no larger than an array can be.
+     */
+    byte[] read(int entry) throws IOException {
+        if (methods[entry] == STORED && sizes[entry] != compressedSizes[entry]) {
+            throw new ZipException(
+                names[entry] + " is stored, but its size " + sizes[entry] + " isn't its compressed size " +
+                    compressedSizes[entry]
+            );
+        }
+        final ByteBuffer input = rawData(entry);
+        final byte[] result = new byte[(int)sizes[entry]];
+        if (methods[entry] == STORED) {
+            input.get(result);
+            return result;
+        }
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int read = 0;
+            while (read < result.length) {
+                final int n = inflater.inflate(result, read, result.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated entry " + names[entry]);
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflate data in " + names[entry] + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private int findEnd() throws ZipException {
+        final int minimum = Math.max(0, data.capacity() - END_SIZE - 0xffff);
+        for (int pos = data.capacity() - END_SIZE; pos >= minimum; pos--) {
+            if (data.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+        throw new ZipException("Not a zip archive");
+    }
+
+    private String readString(int pos, int length) {
+        final byte[] bytes = new byte[length];
+        data.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checkedOffset(long offset) throws ZipException {
+        if (offset < 0 || offset > data.capacity()) {
+            throw new ZipException("Invalid offset or size " + offset);
+        }
+        return (int)offset;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that organizing a jar gives the same packages as organizing its classes directly, however they are stored.
+ */
+public class ArchiveClassSourceTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void matchesOrganize() throws IOException {
+        final TestClasses classes = TestClasses.random(9, 300);
+        final Path jar = classes.writeJar(temp.resolve("classes.jar"), "META-INF/MANIFEST.MF", "p0/resource.txt");
+        assertSameAsOrganize(classes, jar);
+    }
+
+    @Test
+    public void matchesOrganizeWhenStored() throws IOException {
+        final TestClasses classes = TestClasses.random(10, 300);
+        assertSameAsOrganize(classes, writeStoredJar(classes, temp.resolve("stored.jar")));
+    }
+
+    @Test
+    public void matchesOrganizeWithZip64() throws IOException {
+        // More entries than the end of central directory record can count, so the count is in the zip64 record
+        final TestClasses classes = TestClasses.random(11, 200);
+        final String[] resources = new String[0x10000];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = "r/" + i;
+        }
+        final Path jar = classes.writeJar(temp.resolve("zip64.jar"), resources);
+        assertSameAsOrganize(classes, jar);
+    }
+
+    @Test
+    public void skipsVersionedClassesAndModuleDescriptors() throws IOException {
+        final TestClasses classes = TestClasses.random(12, 50);
+        final TestClasses withExtras = TestClasses.random(12, 50);
+        withExtras.define(Opcodes.ACC_MODULE, "module-info", null).end();
+        withExtras.define(Opcodes.ACC_PUBLIC, "META-INF/versions/11/p0/C0", "java/lang/Object")
+            .reference(classes.classNames().get(1))
+            .end();
+        final Path jar = withExtras.writeJar(temp.resolve("multi-release.jar"));
+        assertSameAsOrganize(classes, jar);
+    }
+
+    @Test
+    public void storedEntryOfWrongSizeFails() throws IOException {
+        final TestClasses classes = new TestClasses();
+        classes.define(Opcodes.ACC_PUBLIC, "p/Only", "java/lang/Object").end();
+        final Path jar = writeStoredJar(classes, temp.resolve("broken.jar"));
+
+        // Make the size in the central directory larger than the data stored for the entry
+        final byte[] bytes = Files.readAllBytes(jar);
+        final ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int central = bytes.length - 4;
+        while (data.getInt(central) != ZipArchive.CENTRAL_SIGNATURE) {
+            central--;
+        }
+        data.putInt(central + 24, data.getInt(central + 24) + 10);
+        Files.write(jar, bytes);
+
+        try (ClassSource source = ClassSource.archive(jar)) {
+            assertThrows(ZipException.class, () -> source.read(0));
+        }
+    }
+
+    private static void assertSameAsOrganize(TestClasses classes, Path jar) throws IOException {
+        try (ClassSource source = ClassSource.archive(jar)) {
+            assertEquals(new HashSet<>(classes.classNames()), new HashSet<>(source.classNames()));
+        }
+        assertEquals(
+            TestClasses.packages(ClassOrganizer.organize(classes)),
+            TestClasses.packages(ClassOrganizer.organize(jar))
+        );
+    }
+
+    private static Path writeStoredJar(TestClasses classes, Path jar) throws IOException {
+        try (OutputStream out = Files.newOutputStream(jar); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < classes.classNames().size(); i++) {
+                final byte[] classFile = classes.read(i);
+                final ZipEntry entry = new ZipEntry(classes.classNames().get(i) + ".class");
+                final CRC32 crc = new CRC32();
+                crc.update(classFile);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(classFile.length);
+                entry.setCrc(crc.getValue());
+                zip.putNextEntry(entry);
+                zip.write(classFile);
+                zip.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
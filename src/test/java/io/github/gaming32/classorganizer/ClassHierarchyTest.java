@@ -0,0 +1,47 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Checks that member references are resolved to the class that declares them.
+ */
+public class ClassHierarchyTest {
+    @Test
+    public void inheritedPackagePrivateThroughThis() throws IOException {
+        // class B extends A { void run() { this.foo(); } }, where foo is package-private in A
+        final TestClasses classes = new TestClasses()
+            .define(Opcodes.ACC_PUBLIC, "a/A", "java/lang/Object").method(0, "foo", "()V").end()
+            .define(Opcodes.ACC_PUBLIC, "b/B", "a/A").invoke("b/B", "foo", "()V").end()
+            .define(Opcodes.ACC_PUBLIC, "c/C", "a/A").end();
+        final ClassOrganizeMap map = ClassOrganizer.organize(classes);
+        assertEquals(map.getPackage("a/A"), map.getPackage("b/B"));
+        assertNotEquals(map.getPackage("a/A"), map.getPackage("c/C"));
+    }
+
+    @Test
+    public void inheritedProtectedThroughThis() throws IOException {
+        final TestClasses classes = new TestClasses()
+            .define(Opcodes.ACC_PUBLIC, "a/A", "java/lang/Object").method(Opcodes.ACC_PROTECTED, "foo", "()V").end()
+            .define(Opcodes.ACC_PUBLIC, "b/B", "a/A").invoke("b/B", "foo", "()V").end();
+        final ClassOrganizeMap map = ClassOrganizer.organize(classes);
+        assertNotEquals(map.getPackage("a/A"), map.getPackage("b/B"));
+    }
+
+    @Test
+    public void inheritedPackagePrivateThroughSubclass() throws IOException {
+        // C calls B.foo(), which B inherits from A
+        final TestClasses classes = new TestClasses()
+            .define(Opcodes.ACC_PUBLIC, "a/A", "java/lang/Object").method(0, "foo", "()V").end()
+            .define(Opcodes.ACC_PUBLIC, "b/B", "a/A").end()
+            .define(Opcodes.ACC_PUBLIC, "c/C", "java/lang/Object").invoke("b/B", "foo", "()V").end();
+        final ClassOrganizeMap map = ClassOrganizer.organize(classes);
+        assertEquals(map.getPackage("a/A"), map.getPackage("c/C"));
+        assertNotEquals(map.getPackage("a/A"), map.getPackage("b/B"));
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link ClassOrganizeMap} against a plain map from class to package, through random edits, and checks that
+ * compacting the result of {@link ClassOrganizer#organize} keeps its packages.
+ */
+public class ClassOrganizeMapTest {
+    @Test
+    public void matchesPlainMap() {
+        final Random random = new Random(5);
+        for (int round = 0; round < 20; round++) {
+            final ClassOrganizeMap map = new ClassOrganizeMap();
+            final Map<String, Integer> expected = new HashMap<>();
+            for (int step = 0; step < 300; step++) {
+                final String clazz = "p/C" + random.nextInt(100);
+                final String other = "p/C" + random.nextInt(100);
+                switch (random.nextInt(6)) {
+                    case 0 -> {
+                        final int pkg = random.nextInt(40);
+                        map.addClass(clazz, pkg);
+                        expected.put(clazz, pkg);
+                    }
+                    case 1 -> {
+                        if (expected.containsKey(clazz)) break;
+                        // Without a package, a class goes into the package numbered like the count of classes
+                        map.addClass(clazz);
+                        expected.put(clazz, expected.size());
+                    }
+                    case 2 -> {
+                        map.removeClass(clazz);
+                        expected.remove(clazz);
+                    }
+                    case 3 -> {
+                        if (!expected.containsKey(clazz) || !expected.containsKey(other)) {
+                            assertThrows(IllegalArgumentException.class, () -> map.mergePackages(clazz, other));
+                            break;
+                        }
+                        map.mergePackages(clazz, other);
+                        movePackage(expected, expected.get(other), expected.get(clazz));
+                    }
+                    case 4 -> {
+                        final int pkg1 = random.nextInt(40);
+                        final int pkg2 = random.nextInt(40);
+                        if (pkg1 != pkg2 && (!expected.containsValue(pkg1) || !expected.containsValue(pkg2))) {
+                            assertThrows(IllegalArgumentException.class, () -> map.mergePackages(pkg1, pkg2));
+                            break;
+                        }
+                        map.mergePackages(pkg1, pkg2);
+                        movePackage(expected, pkg2, pkg1);
+                    }
+                    default -> assertMatches(expected, map);
+                }
+            }
+            assertMatches(expected, map);
+
+            final ClassOrganizeMap compacted = map.compacted();
+            final Map<String, Integer> expectedCompacted = new HashMap<>(expected);
+            compact(expectedCompacted);
+            assertMatches(expected, map);
+            assertMatches(expectedCompacted, compacted);
+
+            map.singlePackagesToZero();
+            singlePackagesToZero(expected);
+            assertMatches(expected, map);
+            compacted.singlePackagesToZero();
+            singlePackagesToZero(expectedCompacted);
+            assertMatches(expectedCompacted, compacted);
+        }
+    }
+
+    @Test
+    public void compactingKeepsPackages() throws IOException {
+        final TestClasses classes = TestClasses.random(13, 300);
+        final ClassOrganizeMap map = ClassOrganizer.organize(classes);
+        final Set<Set<String>> packages = TestClasses.packages(map);
+
+        final ClassOrganizeMap compacted = map.compacted();
+        assertEquals(packages, TestClasses.packages(compacted));
+        assertEquals(compacted.packageCount() - 1, compacted.getPackagesIds().last().intValue());
+
+        // Every class without others in its package ends up together in package 0
+        final Set<String> singles = new HashSet<>();
+        final Set<Set<String>> grouped = new HashSet<>();
+        for (final Set<String> pkg : packages) {
+            if (pkg.size() == 1) {
+                singles.addAll(pkg);
+            } else {
+                grouped.add(pkg);
+            }
+        }
+        compacted.singlePackagesToZero().compact();
+        assertEquals(singles, compacted.getClasses(0));
+        grouped.add(singles);
+        assertEquals(grouped, TestClasses.packages(compacted));
+        assertEquals(compacted.packageCount() - 1, compacted.getPackagesIds().last().intValue());
+    }
+
+    private static void movePackage(Map<String, Integer> map, int from, int to) {
+        map.replaceAll((clazz, pkg) -> pkg == from ? to : pkg);
+    }
+
+    private static void compact(Map<String, Integer> map) {
+        final List<Integer> packages = new ArrayList<>(new TreeSet<>(map.values()));
+        map.replaceAll((clazz, pkg) -> packages.indexOf(pkg));
+    }
+
+    private static void singlePackagesToZero(Map<String, Integer> map) {
+        final Map<Integer, Integer> sizes = new HashMap<>();
+        for (final int pkg : map.values()) {
+            sizes.merge(pkg, 1, Integer::sum);
+        }
+        if (!sizes.containsValue(1)) return;
+        // Package 0 is kept for single classes, so if it's taken, every package moves up to start at 1
+        final int shift = sizes.containsKey(0) ? 1 - Collections.min(sizes.keySet()) : 0;
+        map.replaceAll((clazz, pkg) -> sizes.get(pkg) == 1 ? 0 : pkg + shift);
+    }
+
+    private static void assertMatches(Map<String, Integer> expected, ClassOrganizeMap map) {
+        final NavigableMap<Integer, Set<String>> packages = new TreeMap<>();
+        for (final var entry : expected.entrySet()) {
+            packages.computeIfAbsent(entry.getValue(), k -> new HashSet<>()).add(entry.getKey());
+        }
+        assertEquals(packages, map.getPackages());
+        assertEquals(expected.size(), map.classCount());
+        assertEquals(packages.size(), map.packageCount());
+        assertEquals(expected.keySet(), map.getAllClasses());
+        for (final var entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.getPackage(entry.getKey()));
+        }
+        final FrozenClassOrganizeMap frozen = map.freeze();
+        for (final var entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), frozen.getPackage(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link ClassWatcher} gives the same packages as {@link ClassOrganizer#organize} after every kind of
+ * change, even though it only redoes the parts that a change affects.
+ */
+public class ClassWatcherTest {
+    private static final long TIMEOUT_NANOS = Duration.ofSeconds(20).toNanos();
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void matchesOrganizeAfterChanges() throws IOException, InterruptedException {
+        final TestClasses classes = TestClasses.random(3, 200);
+        classes.writeDirectory(root);
+        try (ClassWatcher watcher = start()) {
+            assertSameAsOrganize(classes, watcher);
+
+            // A new edge, which only joins packages
+            final String first = classes.classNames().get(0);
+            final String second = classes.classNames().get(1);
+            classes.define(0, "p9/Hidden", "java/lang/Object").method(0, "run", "()V").end();
+            write(classes, "p9/Hidden");
+            classes.define(Opcodes.ACC_PUBLIC, first, "java/lang/Object").reference("p9/Hidden").end();
+            write(classes, first);
+            awaitSameAsOrganize(classes, watcher);
+
+            // Losing that edge has to split the package again
+            classes.define(Opcodes.ACC_PUBLIC, first, "java/lang/Object").end();
+            write(classes, first);
+            awaitSameAsOrganize(classes, watcher);
+
+            // A declaration change, which the classes that inherit from the class and refer to it have to see
+            classes.define(Opcodes.ACC_PUBLIC, "p8/Sub", second).invoke("p8/Sub", "m0_1", "()V").end();
+            write(classes, "p8/Sub");
+            awaitSameAsOrganize(classes, watcher);
+            classes.define(Opcodes.ACC_PUBLIC, second, "java/lang/Object").method(0, "m0_1", "()V").end();
+            write(classes, second);
+            awaitSameAsOrganize(classes, watcher);
+
+            // Deleting a class that was joined with others
+            classes.remove("p9/Hidden");
+            Files.delete(root.resolve("p9/Hidden.class"));
+            awaitSameAsOrganize(classes, watcher);
+        }
+    }
+
+    @Test
+    public void matchesOrganizeAfterRandomChanges() throws IOException, InterruptedException {
+        final Random random = new Random(4);
+        final TestClasses classes = TestClasses.random(5, 150);
+        classes.writeDirectory(root);
+        try (ClassWatcher watcher = start()) {
+            for (int round = 0; round < 8; round++) {
+                for (int change = 0; change < 5; change++) {
+                    final List<String> names = classes.classNames();
+                    final String name = names.get(random.nextInt(names.size()));
+                    switch (random.nextInt(6)) {
+                        case 0 -> {
+                            classes.remove(name);
+                            Files.deleteIfExists(root.resolve(name + ".class"));
+                        }
+                        case 1 -> {
+                            final String added = "p" + random.nextInt(4) + "/N" + round + "_" + change;
+                            rewrite(classes, added, random);
+                            write(classes, added);
+                        }
+                        default -> {
+                            rewrite(classes, name, random);
+                            write(classes, name);
+                        }
+                    }
+                }
+                awaitSameAsOrganize(classes, watcher);
+            }
+        }
+    }
+
+    /**
+     * Replaces a class with a random one, which may extend and refer to any other class. That includes classes that
+     * don't exist anymore, and superclass cycles.
+     */
+    private static void rewrite(TestClasses classes, String name, Random random) {
+        final List<String> names = new ArrayList<>(classes.classNames());
+        final String superName = random.nextBoolean() ? names.get(random.nextInt(names.size())) : "java/lang/Object";
+        final TestClasses.ClassBuilder builder = classes.define(
+            random.nextInt(3) == 0 ? 0 : Opcodes.ACC_PUBLIC, name, superName
+        );
+        builder.method(random.nextBoolean() ? 0 : Opcodes.ACC_PROTECTED, "m0_" + random.nextInt(150), "()V");
+        for (int i = random.nextInt(4); i > 0; i--) {
+            final String other = names.get(random.nextInt(names.size()));
+            switch (random.nextInt(3)) {
+                case 0 -> builder.reference(other);
+                case 1 -> builder.invoke(other, "m" + random.nextInt(3) + "_" + random.nextInt(150), "()V");
+                default -> builder.invoke(name, "m" + random.nextInt(3) + "_" + random.nextInt(150), "()V");
+            }
+        }
+        builder.end();
+    }
+
+    private ClassWatcher start() throws IOException {
+        return ClassWatcher.start(
+            root, LibraryIndex.EMPTY, ScanEngine.ASM, Duration.ofMillis(50), map -> {}, OrganizeListener.NONE
+        );
+    }
+
+    private void write(TestClasses classes, String name) throws IOException {
+        final Path file = root.resolve(name + ".class");
+        Files.createDirectories(file.getParent());
+        Files.write(file, classes.read(classes.classNames().indexOf(name)));
+    }
+
+    private static void assertSameAsOrganize(TestClasses classes, ClassWatcher watcher) throws IOException {
+        assertEquals(
+            TestClasses.packages(ClassOrganizer.organize(classes)),
+            TestClasses.packages(watcher.current().toClassOrganizeMap())
+        );
+    }
+
+    /**
+     * Waits for the watcher to pick up the changes, which it does in the background
+     */
+    private static void awaitSameAsOrganize(
+        TestClasses classes, ClassWatcher watcher
+    ) throws IOException, InterruptedException {
+        final Set<Set<String>> expected = TestClasses.packages(ClassOrganizer.organize(classes));
+        final long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            if (expected.equals(TestClasses.packages(watcher.current().toClassOrganizeMap()))) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        assertSameAsOrganize(classes, watcher);
+    }
+}
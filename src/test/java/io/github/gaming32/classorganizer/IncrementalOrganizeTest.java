@@ -0,0 +1,72 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link ClassOrganizer#organizeIncremental} gives the same packages as {@link ClassOrganizer#organize},
+ * whatever state its cache is in.
+ */
+public class IncrementalOrganizeTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void matchesOrganizeAcrossChanges() throws IOException {
+        final Path cache = temp.resolve("cache.bin");
+        final TestClasses classes = TestClasses.random(1, 300);
+        assertSameAsOrganize(classes, cache);
+        assertSameAsOrganize(classes, cache);
+
+        // Make a class package-private, so everything that refers to it has to move with it
+        final String first = classes.classNames().get(0);
+        classes.define(0, first, "java/lang/Object").method(0, "m0_0", "()V").end();
+        assertSameAsOrganize(classes, cache);
+        classes.define(Opcodes.ACC_PUBLIC, "p9/New", "java/lang/Object").invoke(first, "m0_0", "()V").end();
+        assertSameAsOrganize(classes, cache);
+    }
+
+    @Test
+    public void corruptCacheIsAMiss() throws IOException {
+        final Path cache = temp.resolve("cache.bin");
+        final TestClasses classes = TestClasses.random(2, 200);
+        ClassOrganizer.organizeIncremental(classes, cache);
+        final byte[] valid = Files.readAllBytes(cache);
+
+        for (int length = 0; length < valid.length; length += 1 + length / 4) {
+            Files.write(cache, Arrays.copyOf(valid, length));
+            assertSameAsOrganize(classes, cache);
+        }
+        final byte[] header = Arrays.copyOf(valid, 8);
+        // A string table far larger than the file
+        assertMiss(classes, cache, header, 0xff, 0xff, 0xff, 0xff, 0x07);
+        // No strings, and far more entries than the file holds
+        assertMiss(classes, cache, header, 0, 0xff, 0xff, 0xff, 0xff, 0x07);
+        // One string, and an entry whose name isn't in the table
+        assertMiss(classes, cache, header, 1, 0, 1, 'x', 1, 5);
+    }
+
+    private static void assertMiss(TestClasses classes, Path cache, byte[] header, int... body) throws IOException {
+        final byte[] file = Arrays.copyOf(header, header.length + body.length);
+        for (int i = 0; i < body.length; i++) {
+            file[header.length + i] = (byte)body[i];
+        }
+        Files.write(cache, file);
+        assertSameAsOrganize(classes, cache);
+    }
+
+    private static void assertSameAsOrganize(TestClasses classes, Path cache) throws IOException {
+        assertEquals(
+            TestClasses.packages(ClassOrganizer.organize(classes)),
+            TestClasses.packages(ClassOrganizer.organizeIncremental(classes, cache))
+        );
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link JarRepackager} moves every class into the package {@link ClassOrganizer#organize} puts it in,
+ * and leaves a jar that organizes the same way.
+ */
+public class JarRepackagerTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void matchesOrganize() throws IOException {
+        final TestClasses classes = TestClasses.random(14, 300);
+        final Path input = classes.writeJar(temp.resolve("input.jar"), "META-INF/MANIFEST.MF", "p0/resource.txt");
+        final Path output = temp.resolve("output.jar");
+        final ClassOrganizeMap map = JarRepackager.organizeAndRepackage(input, output, JarRepackager::packageName);
+        assertEquals(TestClasses.packages(ClassOrganizer.organize(classes)), TestClasses.packages(map));
+
+        final Map<String, byte[]> inputEntries = readEntries(input);
+        final Map<String, byte[]> outputEntries = readEntries(output);
+        assertArrayEquals(inputEntries.get("META-INF/MANIFEST.MF"), outputEntries.get("META-INF/MANIFEST.MF"));
+        assertArrayEquals(inputEntries.get("p0/resource.txt"), outputEntries.get("p0/resource.txt"));
+
+        // Every class is in the package named after its id, and nothing refers to where a class used to be
+        final Map<String, String> newNames = new HashMap<>();
+        final Set<String> outputClasses = new HashSet<>();
+        for (final String name : outputEntries.keySet()) {
+            if (name.endsWith(".class")) {
+                outputClasses.add(name.substring(0, name.length() - 6));
+            }
+        }
+        for (final String clazz : outputClasses) {
+            final String oldName = findOldName(clazz, classes.classNames());
+            final String packageName = JarRepackager.packageName(map.getPackage(oldName));
+            assertEquals(packageName, clazz.substring(0, Math.max(clazz.lastIndexOf('/'), 0)), clazz);
+            newNames.put(oldName, clazz);
+        }
+        assertEquals(new HashSet<>(classes.classNames()), newNames.keySet());
+        for (final String clazz : outputClasses) {
+            for (final String reference : references(outputEntries.get(clazz + ".class"))) {
+                assertTrue(
+                    reference.startsWith("java/") || outputClasses.contains(reference),
+                    clazz + " refers to " + reference
+                );
+            }
+        }
+
+        // Classes that were organized together are still together, under their new names
+        final Set<Set<String>> expected = new HashSet<>();
+        for (final Set<String> pkg : TestClasses.packages(map)) {
+            final Set<String> renamed = new HashSet<>();
+            for (final String clazz : pkg) {
+                renamed.add(newNames.get(clazz));
+            }
+            expected.add(renamed);
+        }
+        assertEquals(expected, TestClasses.packages(ClassOrganizer.organize(output)));
+    }
+
+    @Test
+    public void repackagesInPlaceWithZip64() throws IOException {
+        // Enough entries that the output needs a zip64 end of central directory
+        final TestClasses classes = TestClasses.random(15, 100);
+        final String[] resources = new String[0x10000];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = "r/" + i;
+        }
+        final Path jar = classes.writeJar(temp.resolve("zip64.jar"), resources);
+        final ClassOrganizeMap map = ClassOrganizer.organize(jar);
+        JarRepackager.repackage(jar, jar, map, JarRepackager::packageName);
+
+        final Map<String, byte[]> entries = readEntries(jar);
+        assertEquals(resources.length + classes.classNames().size(), entries.size());
+        assertArrayEquals("r/1234".getBytes(), entries.get("r/1234"));
+        try (ClassSource source = ClassSource.archive(jar)) {
+            assertEquals(classes.classNames().size(), source.classNames().size());
+            assertEquals(TestClasses.packages(map).size(), TestClasses.packages(ClassOrganizer.organize(source)).size());
+        }
+    }
+
+    /**
+     * Finds the class that was moved to {@code newName}, whose simple name is the start of the new one
+     */
+    private static String findOldName(String newName, List<String> oldNames) {
+        final String simpleName = newName.substring(newName.lastIndexOf('/') + 1);
+        String result = null;
+        for (final String oldName : oldNames) {
+            final String oldSimpleName = oldName.substring(oldName.lastIndexOf('/') + 1);
+            if (simpleName.equals(oldSimpleName) || simpleName.startsWith(oldSimpleName + '_')) {
+                assertNull(result, "More than one class could be " + newName);
+                result = oldName;
+            }
+        }
+        assertNotNull(result, "No class could be " + newName);
+        return result;
+    }
+
+    private static Set<String> references(byte[] classFile) {
+        final Set<String> result = new HashSet<>();
+        new ClassReader(classFile).accept(new ClassRemapper(new ClassWriter(0), new Remapper() {
+            @Override
+            public String map(String internalName) {
+                result.add(internalName);
+                return internalName;
+            }
+        }), 0);
+        return result;
+    }
+
+    /**
+     * Reads every entry with {@link ZipInputStream}, which checks the sizes and CRC of each one
+     */
+    private static Map<String, byte[]> readEntries(Path jar) throws IOException {
+        final Map<String, byte[]> result = new HashMap<>();
+        try (InputStream in = Files.newInputStream(jar); ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                assertNull(result.put(entry.getName(), zip.readAllBytes()), "Duplicate entry " + entry.getName());
+            }
+        }
+        return result;
+    }
+}
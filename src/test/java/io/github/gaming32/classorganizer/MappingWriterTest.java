@@ -0,0 +1,137 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the output of {@link MappingWriter} in every format, and that it names classes exactly like
+ * {@link JarRepackager} moves them.
+ */
+public class MappingWriterTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void writesEveryFormat() throws IOException {
+        final ClassOrganizeMap map = new ClassOrganizeMap();
+        map.addClass("x/Solo", 0);
+        map.addClass("y/Foo", 1);
+        map.addClass("x/Foo", 1);
+        map.addClass("x/Outer$Inner", 1);
+        map.addClass("x/Caf\u00e9\uD83D\uDE00", 1);
+        map.addClass("x/package-info", 1);
+        final String[][] lines = {
+            {"x/Solo", "Solo"},
+            {"x/Caf\u00e9\uD83D\uDE00", "a/Caf\u00e9\uD83D\uDE00"},
+            {"x/Foo", "a/Foo"},
+            {"x/Outer$Inner", "a/Outer$Inner"},
+            {"y/Foo", "a/Foo_2"},
+        };
+
+        final StringBuilder tiny = new StringBuilder("tiny\t2\t0\toriginal\torganized\n");
+        final StringBuilder proguard = new StringBuilder();
+        final StringBuilder csrg = new StringBuilder();
+        for (final String[] line : lines) {
+            tiny.append("c\t").append(line[0]).append('\t').append(line[1]).append('\n');
+            proguard.append(line[0].replace('/', '.')).append(" -> ").append(line[1].replace('/', '.')).append(":\n");
+            csrg.append(line[0]).append(' ').append(line[1]).append('\n');
+        }
+        assertEquals(tiny.toString(), write(map, MappingFormat.TINY_V2, List.of()));
+        assertEquals(proguard.toString(), write(map, MappingFormat.PROGUARD, List.of()));
+        assertEquals(csrg.toString(), write(map, MappingFormat.CSRG, List.of()));
+    }
+
+    @Test
+    public void writesMoreThanTheBuffer() throws IOException {
+        final ClassOrganizeMap map = new ClassOrganizeMap();
+        final StringBuilder expected = new StringBuilder();
+        final List<String> classes = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            classes.add("some/long/package/C" + i);
+        }
+        Collections.sort(classes);
+        for (final String clazz : classes) {
+            map.addClass(clazz, 3);
+            expected.append(clazz).append(" c/").append(clazz.substring(clazz.lastIndexOf('/') + 1)).append('\n');
+        }
+        assertEquals(expected.toString(), write(map, MappingFormat.CSRG, List.of()));
+    }
+
+    @Test
+    public void matchesRepackagedJar() throws IOException {
+        final TestClasses classes = new TestClasses();
+        // a/Foo isn't in the map, so it stays where it is and its name is taken in package a
+        classes.define(Opcodes.ACC_PUBLIC, "a/Foo", "java/lang/Object").end();
+        classes.define(Opcodes.ACC_PUBLIC, "x/Foo", "java/lang/Object").end();
+        classes.define(Opcodes.ACC_PUBLIC, "y/Foo", "x/Foo").end();
+        classes.define(Opcodes.ACC_PUBLIC, "x/Bar", "java/lang/Object")
+            .reference("x/Foo")
+            .reference("y/Foo")
+            .reference("a/Foo")
+            .end();
+        classes.define(Opcodes.ACC_PUBLIC, "c/Baz_2", "java/lang/Object").end();
+        classes.define(Opcodes.ACC_PUBLIC, "p/Baz", "java/lang/Object").end();
+        classes.define(Opcodes.ACC_PUBLIC, "q/Baz", "p/Baz").end();
+        classes.define(Opcodes.ACC_PUBLIC, "z/Foo", "java/lang/Object").end();
+        classes.define(Opcodes.ACC_PUBLIC, "META-INF/versions/9/b/Foo", "java/lang/Object").end();
+        final Path input = classes.writeJar(temp.resolve("input.jar"), "META-INF/MANIFEST.MF");
+
+        final ClassOrganizeMap map = new ClassOrganizeMap();
+        map.addClass("x/Foo", 1);
+        map.addClass("y/Foo", 1);
+        map.addClass("x/Bar", 1);
+        map.addClass("z/Foo", 2);
+        map.addClass("META-INF/versions/9/b/Foo", 2);
+        map.addClass("p/Baz", 3);
+        map.addClass("q/Baz", 3);
+        final Path output = temp.resolve("output.jar");
+        JarRepackager.repackage(input, output, map, JarRepackager::packageName);
+
+        final Map<String, String> mappings = new HashMap<>();
+        for (final String line : write(map, MappingFormat.CSRG, classes.classNames()).split("\n")) {
+            final String[] parts = line.split(" ");
+            mappings.put(parts[0], parts[1]);
+        }
+        assertEquals(Map.of(
+            "x/Bar", "a/Bar",
+            "x/Foo", "a/Foo_2",
+            "y/Foo", "a/Foo_3",
+            "z/Foo", "b/Foo",
+            "p/Baz", "c/Baz",
+            "q/Baz", "c/Baz_3"
+        ), mappings);
+
+        final Set<String> expected = new HashSet<>();
+        for (final String clazz : classes.classNames()) {
+            expected.add(mappings.getOrDefault(clazz, clazz) + ".class");
+        }
+        expected.add("META-INF/MANIFEST.MF");
+        final Set<String> actual = new HashSet<>();
+        try (ZipFile zip = new ZipFile(output.toFile())) {
+            for (final ZipEntry entry : Collections.list(zip.entries())) {
+                actual.add(entry.getName());
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static String write(
+        ClassOrganizeMap map, MappingFormat format, Collection<String> otherClasses
+    ) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappingWriter.write(map.freeze(), format, JarRepackager::packageName, otherClasses, Channels.newChannel(out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
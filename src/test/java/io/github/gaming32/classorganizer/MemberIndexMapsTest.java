@@ -0,0 +1,70 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks {@link IntTripleMap} and {@link SymbolTable}, which index members by symbol, against {@code java.util} maps.
+ */
+public class MemberIndexMapsTest {
+    @Test
+    public void intTripleMapMatchesHashMap() {
+        final Random random = new Random(6);
+        // Start small, so that the map has to grow many times
+        final IntTripleMap map = new IntTripleMap(1);
+        final Map<List<Integer>, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            final int a = random.nextInt(50);
+            final int b = random.nextInt(50);
+            final int c = random.nextInt(5);
+            if (random.nextBoolean()) {
+                // -1 is how the member index takes members out again, and reads as missing
+                final int value = random.nextInt(10) == 0 ? -1 : random.nextInt(1 << 16);
+                final Integer previous = expected.put(List.of(a, b, c), value);
+                assertEquals(previous != null ? previous : -1, map.put(a, b, c, value));
+            } else {
+                assertEquals(expected.getOrDefault(List.of(a, b, c), -1).intValue(), map.get(a, b, c));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (final var entry : expected.entrySet()) {
+            final List<Integer> key = entry.getKey();
+            assertEquals(entry.getValue().intValue(), map.get(key.get(0), key.get(1), key.get(2)));
+        }
+        // Negative keys are never stored
+        assertEquals(-1, map.get(-1, 0, 0));
+        assertEquals(-1, map.get(0, -1, 0));
+        assertEquals(-1, map.get(0, 0, -1));
+    }
+
+    @Test
+    public void symbolTableInternsDensely() {
+        final SymbolTable symbols = new SymbolTable(1);
+        final List<String> expected = new ArrayList<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            final String symbol = "m" + random.nextInt(1000);
+            int id = expected.indexOf(symbol);
+            if (id < 0) {
+                id = expected.size();
+                expected.add(symbol);
+            }
+            if (random.nextBoolean()) {
+                assertEquals(id, symbols.intern(symbol));
+            } else {
+                // Interning part of a longer string gives the same id as the whole string
+                final String source = "(L" + symbol + ";)V";
+                assertEquals(id, symbols.intern(source, 2, 2 + symbol.length()));
+            }
+            assertEquals(symbol, symbols.symbol(id));
+        }
+        assertEquals(expected.size(), symbols.size());
+        assertArrayEquals(expected.toArray(new String[0]), symbols.toArray());
+        assertEquals(0, symbols.get(expected.get(0)));
+        assertEquals(-1, symbols.get("missing"));
+    }
+}
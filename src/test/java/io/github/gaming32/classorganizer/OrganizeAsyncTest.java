@@ -0,0 +1,83 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link ClassOrganizer#organizeAsync} gives the same packages as {@link ClassOrganizer#organize} on any
+ * executor, and that cancelling it stops the run.
+ */
+public class OrganizeAsyncTest {
+    @Test
+    public void matchesOrganize() throws Exception {
+        final TestClasses classes = TestClasses.random(7, 400);
+        final ClassOrganizeMap expected = ClassOrganizer.organize(classes);
+        // A single thread can't deadlock, since the run does its own work while it waits
+        for (final int threads : new int[] {1, 4}) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final ClassOrganizeMap map = ClassOrganizer.organizeAsync(
+                    classes, LibraryIndex.EMPTY, ScanEngine.ASM, executor, OrganizeListener.NONE
+                ).get(20, TimeUnit.SECONDS);
+                assertEquals(TestClasses.packages(expected), TestClasses.packages(map), threads + " threads");
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void cancellingStopsTheRun() throws Exception {
+        final TestClasses classes = TestClasses.random(8, 5000);
+        final AtomicInteger reads = new AtomicInteger();
+        final ClassSource source = new ClassSource() {
+            @Override
+            public List<String> classNames() {
+                return classes.classNames();
+            }
+
+            @Override
+            public byte[] read(int index) throws IOException {
+                reads.incrementAndGet();
+                return classes.read(index);
+            }
+        };
+        final AtomicReference<CompletableFuture<ClassOrganizeMap>> future = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger finishedPhases = new AtomicInteger();
+        final OrganizeListener listener = new OrganizeListener() {
+            @Override
+            public void progress(OrganizePhase phase, int done, int total) {
+                // Cancel as soon as the first classes are read, from the thread doing the work
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                future.get().cancel(false);
+            }
+
+            @Override
+            public void phaseFinished(OrganizePhase phase, long nanos) {
+                finishedPhases.incrementAndGet();
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        future.set(ClassOrganizer.organizeAsync(source, LibraryIndex.EMPTY, ScanEngine.ASM, executor, listener));
+        started.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(20, TimeUnit.SECONDS), "The run didn't stop");
+
+        assertTrue(future.get().isCancelled());
+        assertEquals(0, finishedPhases.get(), "The read phase finished after the run was cancelled");
+        assertTrue(reads.get() < classes.classNames().size(), reads + " classes were read");
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that {@link ScanEngine#CONSTANT_POOL} finds exactly what {@link ScanEngine#ASM} does.
+ */
+public class ScanEngineTest {
+    @Test
+    public void asmJar() throws Exception {
+        final Path jar = Path.of(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (ClassSource source = ClassSource.archive(jar)) {
+            assertSameSummaries(source);
+        }
+    }
+
+    @Test
+    public void javaBase() throws IOException {
+        // Covers records, modules, type annotations and plenty of invokedynamic
+        final Path root = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("modules", "java.base");
+        try (ClassSource source = ClassSource.directory(root)) {
+            assertSameSummaries(source);
+        }
+    }
+
+    private static void assertSameSummaries(ClassSource source) throws IOException {
+        for (int i = 0; i < source.classNames().size(); i++) {
+            final byte[] classFile = source.read(i);
+            assertEquals(
+                describe(ScanEngine.ASM.summarize(classFile)),
+                describe(ScanEngine.CONSTANT_POOL.summarize(classFile)),
+                source.classNames().get(i)
+            );
+        }
+    }
+
+    /**
+     * Resolves a summary's string ids, and sorts the parts whose order doesn't matter.
+     */
+    private static List<Object> describe(ClassSummary summary) {
+        final List<String> members = new ArrayList<>();
+        for (int i = 0; i < summary.memberCount(); i++) {
+            members.add(summary.memberAccess[i] + " " + summary.memberName(i) + summary.memberDescriptor(i));
+        }
+        final Set<String> classReferences = new TreeSet<>();
+        for (final int name : summary.classReferences) {
+            classReferences.add(summary.strings[name]);
+        }
+        final Set<String> memberReferences = new TreeSet<>();
+        for (int i = 0; i < summary.memberReferences.length; i += 3) {
+            memberReferences.add(
+                summary.strings[summary.memberReferences[i]] + '.' +
+                    summary.strings[summary.memberReferences[i + 1]] +
+                    summary.strings[summary.memberReferences[i + 2]]
+            );
+        }
+        return List.of(
+            summary.access,
+            Objects.toString(summary.superName),
+            List.of(summary.interfaces),
+            members,
+            classReferences,
+            memberReferences
+        );
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.gaming32.classorganizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that {@link ClassOrganizer#organizeStreaming} gives the same packages as {@link ClassOrganizer#organize},
+ * whether its edges fit in memory or not.
+ */
+public class StreamingOrganizeTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void matchesOrganize() throws IOException {
+        final TestClasses classes = TestClasses.random(6, 400);
+        final ClassOrganizeMap expected = ClassOrganizer.organize(classes);
+        // Everything in memory, a budget that spills many times, and no budget at all
+        for (final long budget : new long[] {StreamingOptions.DEFAULT.edgeBudget(), 64, 0}) {
+            for (final int batchSize : new int[] {1, 37, 4096}) {
+                final StreamingOptions options = new StreamingOptions(batchSize, budget, temp);
+                assertEquals(
+                    TestClasses.packages(expected),
+                    TestClasses.packages(ClassOrganizer.organizeStreaming(classes, options)),
+                    "budget " + budget + ", batch size " + batchSize
+                );
+            }
+        }
+    }
+
+    @Test
+    public void spillGivesBackEveryEdge() throws IOException {
+        try (EdgeSpill spill = new EdgeSpill(40, temp)) {
+            for (int id = 0; id < 100; id++) {
+                spill.add(id, new int[] {id, id + 1, id + 2});
+            }
+            // Too big for the budget, so it goes straight to disk
+            spill.add(100, new int[20]);
+            assertTrue(spill.spilledBytes() > 0);
+
+            final long[] sums = new long[101];
+            final int[] counts = new int[101];
+            spill.forEach((classId, edge) -> {
+                sums[classId] += edge;
+                counts[classId]++;
+            });
+            for (int id = 0; id < 100; id++) {
+                assertEquals(3, counts[id]);
+                assertEquals(3L * id + 3, sums[id]);
+            }
+            assertEquals(20, counts[100]);
+        }
+    }
+
+    @Test
+    public void truncatedSpillFails() throws IOException, ReflectiveOperationException {
+        try (EdgeSpill spill = new EdgeSpill(0, temp)) {
+            for (int id = 0; id < 100; id++) {
+                spill.add(id, new int[] {id});
+            }
+            // The file may already be unlinked, so cut it short through the spill's own channel
+            final Field file = EdgeSpill.class.getDeclaredField("file");
+            file.setAccessible(true);
+            ((FileChannel)file.get(spill)).truncate(spill.spilledBytes() - 6);
+            assertTimeoutPreemptively(
+                Duration.ofSeconds(10), () -> assertThrows(EOFException.class, () -> spill.forEach((id, edge) -> {}))
+            );
+        }
+    }
+}
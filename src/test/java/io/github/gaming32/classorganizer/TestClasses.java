@@ -0,0 +1,220 @@
+package io.github.gaming32.classorganizer;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds small class files with ASM, and serves them as a {@link ClassSource}. The classes are never loaded, so they
+ * only have to be well-formed enough to be read.
+ */
+final class TestClasses implements ClassSource {
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> classFiles = new ArrayList<>();
+
+    /**
+     * Starts a class. It is added when {@link ClassBuilder#end} is called.
+     */
+    ClassBuilder define(int access, String name, String superName, String... interfaces) {
+        return new ClassBuilder(access, name, superName, interfaces);
+    }
+
+    /**
+     * Adds a class, or replaces the class of the same name.
+     */
+    TestClasses put(String name, byte[] classFile) {
+        final int index = names.indexOf(name);
+        if (index >= 0) {
+            classFiles.set(index, classFile);
+        } else {
+            names.add(name);
+            classFiles.add(classFile);
+        }
+        return this;
+    }
+
+    TestClasses remove(String name) {
+        final int index = names.indexOf(name);
+        names.remove(index);
+        classFiles.remove(index);
+        return this;
+    }
+
+    @Override
+    public List<String> classNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public byte[] read(int index) {
+        return classFiles.get(index);
+    }
+
+    @Override
+    public long stamp(int index) {
+        return Arrays.hashCode(classFiles.get(index)) | 1L << 32;
+    }
+
+    /**
+     * Writes every class to a file under {@code root}, named after it.
+     */
+    Path writeDirectory(Path root) throws IOException {
+        for (int i = 0; i < names.size(); i++) {
+            final Path file = root.resolve(names.get(i) + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, classFiles.get(i));
+        }
+        return root;
+    }
+
+    /**
+     * Writes every class to a jar, after resources whose content is their own name.
+     */
+    Path writeJar(Path jar, String... resources) throws IOException {
+        try (OutputStream out = Files.newOutputStream(jar); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (final String resource : resources) {
+                zip.putNextEntry(new ZipEntry(resource));
+                zip.write(resource.getBytes());
+                zip.closeEntry();
+            }
+            for (int i = 0; i < names.size(); i++) {
+                zip.putNextEntry(new ZipEntry(names.get(i) + ".class"));
+                zip.write(classFiles.get(i));
+                zip.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Generates classes spread over a few packages, with every kind of reference that can cause a merge: access to
+     * package-private classes, and package-private and protected members used directly, through subclasses and
+     * through {@code this}.
+     */
+    static TestClasses random(long seed, int count) {
+        final Random random = new Random(seed);
+        final TestClasses result = new TestClasses();
+        final String[] classNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            classNames[i] = "p" + random.nextInt(4) + "/C" + i;
+        }
+        final int[] accesses = {Opcodes.ACC_PUBLIC, 0, Opcodes.ACC_PROTECTED, Opcodes.ACC_PRIVATE};
+        for (int i = 0; i < count; i++) {
+            final int access = random.nextInt(3) == 0 ? 0 : Opcodes.ACC_PUBLIC;
+            final String superName = i > 0 && random.nextInt(3) == 0
+                ? classNames[random.nextInt(i)]
+                : "java/lang/Object";
+            final ClassBuilder builder = result.define(access, classNames[i], superName);
+            for (int m = 0; m < 3; m++) {
+                builder.method(accesses[random.nextInt(accesses.length)], "m" + m + "_" + i, "()V");
+            }
+            builder.field(accesses[random.nextInt(accesses.length)], "f" + i, "I");
+            final int referenceCount = random.nextInt(4);
+            for (int r = 0; r < referenceCount; r++) {
+                final int other = random.nextInt(count);
+                switch (random.nextInt(4)) {
+                    case 0 -> builder.reference(classNames[other]);
+                    case 1 -> builder.invoke(classNames[other], "m" + random.nextInt(3) + "_" + other, "()V");
+                    case 2 -> builder.getField(classNames[other], "f" + other, "I");
+                    // Usually inherited, if the class has a superclass being organized
+                    default -> builder.invoke(classNames[i], "m" + random.nextInt(3) + "_" + other, "()V");
+                }
+            }
+            builder.end();
+        }
+        return result;
+    }
+
+    /**
+     * @return The classes of each package in {@code map}, regardless of how the packages are numbered
+     */
+    static Set<Set<String>> packages(ClassOrganizeMap map) {
+        final Set<Set<String>> result = new HashSet<>();
+        for (final Set<String> classes : map.getPackages().values()) {
+            result.add(new HashSet<>(classes));
+        }
+        return result;
+    }
+
+    final class ClassBuilder {
+        private final String name;
+        private final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        private MethodVisitor code;
+
+        private ClassBuilder(int access, String name, String superName, String[] interfaces) {
+            this.name = name;
+            writer.visit(Opcodes.V17, access | Opcodes.ACC_SUPER, name, null, superName, interfaces);
+        }
+
+        /**
+         * Declares a method whose body just throws.
+         */
+        ClassBuilder method(int access, String name, String descriptor) {
+            final MethodVisitor method = writer.visitMethod(access, name, descriptor, null, null);
+            method.visitCode();
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitInsn(Opcodes.ATHROW);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+            return this;
+        }
+
+        ClassBuilder field(int access, String name, String descriptor) {
+            writer.visitField(access, name, descriptor, null, null).visitEnd();
+            return this;
+        }
+
+        /**
+         * Calls a static method from this class's {@code run} method.
+         */
+        ClassBuilder invoke(String owner, String name, String descriptor) {
+            code().visitMethodInsn(Opcodes.INVOKESTATIC, owner, name, descriptor, false);
+            return this;
+        }
+
+        /**
+         * Reads a static {@code int} field from this class's {@code run} method.
+         */
+        ClassBuilder getField(String owner, String name, String descriptor) {
+            code().visitFieldInsn(Opcodes.GETSTATIC, owner, name, descriptor);
+            code.visitInsn(Opcodes.POP);
+            return this;
+        }
+
+        /**
+         * Loads a class literal from this class's {@code run} method.
+         */
+        ClassBuilder reference(String className) {
+            code().visitLdcInsn(Type.getObjectType(className));
+            code.visitInsn(Opcodes.POP);
+            return this;
+        }
+
+        private MethodVisitor code() {
+            if (code == null) {
+                code = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "run", "()V", null, null);
+                code.visitCode();
+            }
+            return code;
+        }
+
+        TestClasses end() {
+            if (code != null) {
+                code.visitInsn(Opcodes.RETURN);
+                code.visitMaxs(0, 0);
+                code.visitEnd();
+            }
+            writer.visitEnd();
+            return put(name, writer.toByteArray());
+        }
+    }
+}